@@ -43,8 +43,16 @@ public class GiveawayBot
     private final long botId, controlChannel;
     
     private final WebhookLog webhook;
+    private final DeferredExecutor deferred;
+    private final GuildRefresher refresher;
+    private final GiveawayReaper reaper;
     private final FileUploader uploader;
+    private final EntrantPoolCache entrantPools;
+    private final RateLimiter userLimiter, guildLimiter;
+    private final DuplicateFilter duplicates;
+    private final Statistics statistics;
     private final RestClient restClient;
+    private final RestDispatcher dispatcher;
     private final Database database;
     private final InteractionsClient interClient;
     private final GiveawayManager manager;
@@ -69,11 +77,25 @@ public class GiveawayBot
         
         // instantiate the remaing components
         uploader = new FileUploader(config.getStringList("file-uploader"));
+        userLimiter = new RateLimiter(65536, 
+                config.hasPath("rate-limit.user-burst") ? config.getDouble("rate-limit.user-burst") : 10, 
+                config.hasPath("rate-limit.user-per-second") ? config.getDouble("rate-limit.user-per-second") : 1);
+        guildLimiter = new RateLimiter(16384, 
+                config.hasPath("rate-limit.guild-burst") ? config.getDouble("rate-limit.guild-burst") : 200, 
+                config.hasPath("rate-limit.guild-per-second") ? config.getDouble("rate-limit.guild-per-second") : 20);
+        duplicates = new DuplicateFilter();
+        entrantPools = new EntrantPoolCache((config.hasPath("reroll-cache-mb") ? config.getLong("reroll-cache-mb") : 64L) * 1024 * 1024);
         GiveawayListener listener = new GiveawayListener(this);
         EmojiParser emojis = new EmojiParser(config.getConfig("emojis").getStringList("free"));
         restClient = new RestClient(config.getString("bot-token"));
+        dispatcher = new RestDispatcher(restClient);
+        deferred = new DeferredExecutor(restClient, config.getLong("app-id"));
+        reaper = new GiveawayReaper(database, dispatcher);
+        refresher = new GuildRefresher(dispatcher, database, reaper);
         premium = new PremiumChecker(database, webhook, config.getString("checker-token"));
-        manager = new GiveawayManager(database, restClient, uploader, emojis, botId);
+        manager = new GiveawayManager(database, dispatcher, reaper, uploader, emojis, botId, controlChannel, 
+                config.hasPath("hot-giveaways.clicks-per-second") ? config.getDouble("hot-giveaways.clicks-per-second") : 5, 
+                config.hasPath("hot-giveaways.update-seconds") ? config.getLong("hot-giveaways.update-seconds") : 5L);
         uptimer = new Uptimer(this);
         countUpdater = new ServerCountUpdater(this, config.getConfig("bot-lists").entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().unwrapped().toString())));
         
@@ -109,6 +131,8 @@ public class GiveawayBot
                 .setListener(listener)
                 .build();
 
+        statistics = new Statistics(database, () -> countUpdater.getServerCount(), manager::getEndedCount, () -> interClient.getMetrics());
+        
         // update commands if necessary
         if(config.hasPath("update-commands") && config.getBoolean("update-commands"))
             interClient.updateGlobalCommands();
@@ -124,10 +148,14 @@ public class GiveawayBot
     public void start() throws Exception
     {
         interClient.start();
+        dispatcher.start();
         manager.start();
+        refresher.start();
+        reaper.start();
         premium.start();
         uptimer.start();
         countUpdater.start();
+        statistics.start();
     }
     
     public void shutdown()
@@ -143,10 +171,15 @@ public class GiveawayBot
             {
                 Thread.sleep(500);
                 uptimer.shutdown();
+                statistics.shutdown();
                 countUpdater.shutdown();
                 interClient.shutdown();
+                deferred.shutdown();
+                refresher.shutdown();
+                reaper.shutdown();
                 premium.shutdown();
                 manager.shutdown();
+                dispatcher.shutdown();
                 uploader.shutdown();
                 webhook.sendBlocking(WebhookLog.Level.INFO, "Shutting down...  `" + reason + "`");
                 webhook.shutdown();
@@ -185,6 +218,81 @@ public class GiveawayBot
         return restClient;
     }
     
+    public RestDispatcher getRestDispatcher()
+    {
+        return dispatcher;
+    }
+    
+    public FileUploader getFileUploader()
+    {
+        return uploader;
+    }
+    
+    public EntrantPoolCache getEntrantPoolCache()
+    {
+        return entrantPools;
+    }
+    
+    /**
+     * Checks the per-user and per-guild limits for an incoming interaction.
+     *
+     * @param userId the user id
+     * @param guildId the guild id, or 0 for DMs
+     * @return true if the interaction should be handled
+     */
+    public boolean allowInteraction(long userId, long guildId)
+    {
+        return userLimiter.tryAcquire(userId) && (guildId == 0L || guildLimiter.tryAcquire(guildId));
+    }
+    
+    /**
+     * Checks the per-user limit for an enter or leave click. These skip the
+     * guild limit, since a popular giveaway can get a lot of legitimate
+     * clicks from one guild.
+     *
+     * @param userId the user id
+     * @return true if the click should be handled
+     */
+    public boolean allowClick(long userId)
+    {
+        return userLimiter.tryAcquire(userId);
+    }
+    
+    public String getRateLimitMetrics()
+    {
+        return "user{" + userLimiter.getMetrics() + "}, guild{" + guildLimiter.getMetrics() + "}";
+    }
+    
+    public DuplicateFilter getDuplicateFilter()
+    {
+        return duplicates;
+    }
+    
+    public EntryCountUpdater getEntryCountUpdater()
+    {
+        return manager.getEntryCountUpdater();
+    }
+    
+    public Statistics getStatistics()
+    {
+        return statistics;
+    }
+    
+    public DeferredExecutor getDeferredExecutor()
+    {
+        return deferred;
+    }
+    
+    public GuildRefresher getGuildRefresher()
+    {
+        return refresher;
+    }
+    
+    public GiveawayReaper getGiveawayReaper()
+    {
+        return reaper;
+    }
+    
     public Database getDatabase()
     {
         return database;
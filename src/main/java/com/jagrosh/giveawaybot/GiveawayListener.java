@@ -17,12 +17,16 @@ package com.jagrosh.giveawaybot;
 
 import com.jagrosh.giveawaybot.commands.GBCommand;
 import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.Deadline;
+import com.jagrosh.giveawaybot.entities.DuplicateFilter;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.giveawaybot.entities.PremiumLevel;
+import com.jagrosh.giveawaybot.entities.Statistics;
 import com.jagrosh.giveawaybot.util.FormatUtil;
 import com.jagrosh.interactions.InteractionsListener;
 import com.jagrosh.interactions.command.Choice;
 import com.jagrosh.interactions.components.*;
+import com.jagrosh.interactions.entities.Permission;
 import com.jagrosh.interactions.entities.SentMessage;
 import com.jagrosh.interactions.receive.CommandInteractionDataOption;
 import com.jagrosh.interactions.receive.Interaction;
@@ -43,6 +47,8 @@ import org.slf4j.LoggerFactory;
  */
 public class GiveawayListener implements InteractionsListener
 {
+    private final static int MAX_CHOICES = 25;
+    
     private final Logger log = LoggerFactory.getLogger(GiveawayListener.class);
     private final Map<String,Long> metrics = new HashMap<>();
     private final GiveawayBot bot;
@@ -54,6 +60,17 @@ public class GiveawayListener implements InteractionsListener
     
     @Override
     public InteractionResponse onModalSubmit(Interaction interaction)
+    {
+        // a retried delivery must not create a second giveaway
+        return bot.getDuplicateFilter().execute(interaction.getToken(), DuplicateFilter.INTERACTION_WINDOW, () -> 
+        {
+            if(!bot.allowInteraction(interaction.getUser().getIdLong(), interaction.getGuildId()))
+                return GBCommand.respondError(LocalizedMessage.ERROR_RATE_LIMITED.getLocalizedMessage(interaction.getEffectiveLocale()));
+            return bot.getDeferredExecutor().execute("ModalSubmit", interaction, true, deadline -> createGiveaway(interaction, deadline));
+        });
+    }
+    
+    private InteractionResponse createGiveaway(Interaction interaction, Deadline deadline)
     {
         try
         {
@@ -67,7 +84,7 @@ public class GiveawayListener implements InteractionsListener
                     lv, interaction.getEffectiveLocale());
 
             // attempt giveaway creation
-            long id = bot.getGiveawayManager().sendGiveaway(g, interaction.getGuildId(), interaction.getChannelId());
+            long id = bot.getGiveawayManager().sendGiveaway(g, interaction.getGuildId(), interaction.getChannelId(), lv, deadline);
 
             return new MessageCallback(new SentMessage.Builder()
                     .setContent(LocalizedMessage.SUCCESS_GIVEAWAY_CREATED.getLocalizedMessage(interaction.getEffectiveLocale(), Long.toString(id)))
@@ -87,7 +104,7 @@ public class GiveawayListener implements InteractionsListener
         switch(interaction.getComponentData().getType())
         {
             case BUTTON:
-                return onButton(interaction);
+                return bot.getDuplicateFilter().execute(interaction.getToken(), DuplicateFilter.INTERACTION_WINDOW, () -> onButton(interaction));
         }
         return new DeferredCallback(false);
     }
@@ -98,57 +115,41 @@ public class GiveawayListener implements InteractionsListener
         CommandInteractionDataOption op = interaction.getCommandData().getOptionByName("giveaway_id");
         if(op != null && op.isFocused())
         {
-            return new AutocompleteCallback<>(bot.getDatabase().getGiveawaysByChannel(interaction.getChannelId())
-                    .stream().limit(25).map(g -> new Choice<>(g.getPrize(), g.getMessageId()+"")).collect(Collectors.toList()));
+            return new AutocompleteCallback<>(bot.getDatabase().searchGiveawaysByChannel(interaction.getChannelId(), op.getStringValue(), MAX_CHOICES)
+                    .stream().map(g -> new Choice<>(g.getPrize(), g.getMessageId()+"")).collect(Collectors.toList()));
         }
         return new DeferredCallback(false);
     }
     
     private InteractionResponse onButton(Interaction interaction)
     {
+        // reject spam clicks before touching the database
         String customId = interaction.getComponentData().getCustomId();
+        boolean entry = customId.equalsIgnoreCase(GiveawayManager.ENTER_BUTTON_ID) || customId.toLowerCase().startsWith(GiveawayManager.LEAVE_BUTTON_ID.toLowerCase());
+        if(!(entry ? bot.allowClick(interaction.getUser().getIdLong()) : bot.allowInteraction(interaction.getUser().getIdLong(), interaction.getGuildId())))
+            return GBCommand.respondError(LocalizedMessage.ERROR_RATE_LIMITED.getLocalizedMessage(interaction.getEffectiveLocale()));
         if(customId.equalsIgnoreCase(GiveawayManager.ENTER_BUTTON_ID))
         {
-            long timeStart = System.nanoTime();
-            long id = interaction.getMessage().getIdLong();
-            Giveaway g = bot.getDatabase().getGiveaway(id);
-            long timeGive = System.nanoTime();
-            if(g == null)
-                return GBCommand.respondError(LocalizedMessage.ERROR_GIVEAWAY_ENDED.getLocalizedMessage(interaction.getEffectiveLocale()));
-            
-            // sanity check
-            if(g.getGuildId() != interaction.getGuildId() || g.getChannelId() != interaction.getChannelId())
-                log.debug(String.format("Giveaway guild/channel ids don't match for giveaway %d! Giveaway: %d/%d Interaction: %d/%d", g.getMessageId(), g.getGuildId(), g.getChannelId(), interaction.getGuildId(), interaction.getChannelId()));
-            
-            int entered = bot.getDatabase().addEntry(id, interaction.getUser());
-            long timeEnter = System.nanoTime();
-            MessageCallback msg = entered >= 0 
-                    ? new MessageCallback(bot.getGiveawayManager().renderGiveaway(g, entered), true) 
-                    : new MessageCallback(new SentMessage.Builder()
-                        .setReferenceMessage(id)
-                        .setContent(LocalizedMessage.ERROR_GIVEAWAY_ALREADY_ENTERED.getLocalizedMessage(interaction.getEffectiveLocale()))
-                        .addComponent(new ActionRowComponent(new ButtonComponent(ButtonComponent.Style.DANGER, 
-                                LocalizedMessage.GIVEAWAY_LEAVE.getLocalizedMessage(interaction.getEffectiveLocale()), 
-                                GiveawayManager.LEAVE_BUTTON_ID + ":" + id)))
-                        .setEphemeral(true).build());
-            long timeRender = System.nanoTime();
-            increaseMetricValue("ButtonTotalTime", timeRender - timeStart);
-            increaseMetricValue("ButtonRenderTime", timeRender - timeEnter);
-            increaseMetricValue("ButtonEnterTime", timeEnter - timeGive);
-            increaseMetricValue("ButtonRetrieveTime", timeGive - timeStart);
-            return msg;
+            return enterGiveaway(interaction);
         }
         else if(customId.toLowerCase().startsWith(GiveawayManager.LEAVE_BUTTON_ID.toLowerCase()))
         {
+            return leaveGiveaway(interaction, customId);
+        }
+        else if(customId.toLowerCase().startsWith(GiveawayManager.LIST_BUTTON_ID.toLowerCase()))
+        {
+            if(!interaction.getMember().hasPermission(Permission.MANAGE_GUILD))
+                return GBCommand.respondError(LocalizedMessage.ERROR_USER_PERMISSIONS.getLocalizedMessage(interaction.getEffectiveLocale()));
             try
             {
-                long id = Long.parseLong(customId.split(":")[1]);
-                Giveaway g = bot.getDatabase().getGiveaway(id);
-                return new MessageCallback(new SentMessage.Builder()
-                        .setContent(g == null ? Constants.ERROR + " " + LocalizedMessage.ERROR_GIVEAWAY_ENDED.getLocalizedMessage(interaction.getEffectiveLocale()) 
-                                    : bot.getDatabase().removeEntry(id, interaction.getUser()) ? Constants.YAY + " " + LocalizedMessage.SUCCESS_LEAVE.getLocalizedMessage(interaction.getEffectiveLocale()) 
-                                    : Constants.ERROR + " " + LocalizedMessage.ERROR_GIVEAWAY_NOT_ENTERED.getLocalizedMessage(interaction.getEffectiveLocale()))
-                        .removeComponents().setEphemeral(true).build(), true);
+                String[] parts = customId.split(":");
+                SentMessage page = bot.getGiveawayManager().renderGiveawayList(interaction.getGuildId(), 
+                        Long.parseLong(parts[1]), Long.parseLong(parts[2]), !parts[3].equalsIgnoreCase("prev"));
+                if(page == null)
+                    return new MessageCallback(new SentMessage.Builder()
+                            .setContent(LocalizedMessage.WARNING_NO_GIVEAWAYS.getLocalizedMessage(interaction.getEffectiveLocale()))
+                            .removeComponents().build(), true);
+                return new MessageCallback(page, true);
             }
             catch(ArrayIndexOutOfBoundsException | NumberFormatException ignore){}
         }
@@ -160,15 +161,25 @@ public class GiveawayListener implements InteractionsListener
                     long total = Runtime.getRuntime().totalMemory() / 1024 / 1024;
                     long used = total - (Runtime.getRuntime().freeMemory() / 1024 / 1024);
                     long uptime = ManagementFactory.getRuntimeMXBean().getUptime() / 1000;
+                    Statistics stats = bot.getStatistics();
                     return new MessageCallback(new SentMessage.Builder()
                             .setContent("```css"
                                     + "\nUptime   : " + FormatUtil.secondsToTime(uptime).replace("*", "")
                                     + "\nMemory   : " + used + "mb / " + total + "mb"
-                                    + "\nGiveaways: " + bot.getDatabase().countAllGiveaways()
-                                    + "\nAvg Req  : " + (interaction.getClient().getMetrics().getOrDefault("TotalTime", 0L) / interaction.getClient().getMetrics().getOrDefault("TotalRequests", 1L) * 1e-9)
-                                    + "\nReq/Sec  : " + (interaction.getClient().getMetrics().getOrDefault("TotalRequests", 0L) / uptime)
+                                    + "\nGiveaways: " + stats.getActiveGiveaways()
+                                    + "\nEntries  : " + stats.getEntries(Statistics.MINUTE) + "/min, " + stats.getEntries(Statistics.HOUR) + "/hr"
+                                    + "\nEnded    : " + stats.getEndings(Statistics.MINUTE) + "/min, " + stats.getEndings(Statistics.HOUR) + "/hr"
+                                    + "\nAvg Req  : " + String.format("%.4f", stats.getAverageRequestTime(Statistics.MINUTE)) + "s (last min)"
+                                    + "\nReq/Sec  : " + String.format("%.2f", stats.getRequestsPerSecond(Statistics.MINUTE)) + " (last min)"
                                     + "\nMetrics  : " + interaction.getClient().getMetrics()
                                     + "\nMetrics2 : " + metrics
+                                    + "\nEndings  : " + bot.getGiveawayManager().getEndingMetrics()
+                                    + "\nRest     : " + bot.getRestDispatcher().getMetrics()
+                                    + "\nUploads  : " + bot.getFileUploader().getMetrics()
+                                    + "\nRerolls  : " + bot.getEntrantPoolCache().getMetrics()
+                                    + "\nLimits   : " + bot.getRateLimitMetrics()
+                                    + "\nDupes    : " + bot.getDuplicateFilter().getMetrics()
+                                    + "\nHot      : " + bot.getEntryCountUpdater().getMetrics()
                                     + "\n```")
                             .setEphemeral(true).build());
                 case "shutdown":
@@ -184,6 +195,59 @@ public class GiveawayListener implements InteractionsListener
         return GBCommand.respondError(LocalizedMessage.ERROR_GENERIC.getLocalizedMessage(interaction.getEffectiveLocale()));
     }
     
+    private InteractionResponse enterGiveaway(Interaction interaction)
+    {
+        long timeStart = System.nanoTime();
+        long id = interaction.getMessage().getIdLong();
+        Giveaway g = bot.getDatabase().getGiveaway(id);
+        long timeGive = System.nanoTime();
+        if(g == null)
+            return GBCommand.respondError(LocalizedMessage.ERROR_GIVEAWAY_ENDED.getLocalizedMessage(interaction.getEffectiveLocale()));
+        
+        // sanity check
+        if(g.getGuildId() != interaction.getGuildId() || g.getChannelId() != interaction.getChannelId())
+            log.debug(String.format("Giveaway guild/channel ids don't match for giveaway %d! Giveaway: %d/%d Interaction: %d/%d", g.getMessageId(), g.getGuildId(), g.getChannelId(), interaction.getGuildId(), interaction.getChannelId()));
+        
+        int entered = bot.getDatabase().addEntry(id, interaction.getUser());
+        if(entered >= 0)
+            bot.getStatistics().recordEntry();
+        long timeEnter = System.nanoTime();
+        MessageCallback msg = entered < 0 
+                ? new MessageCallback(new SentMessage.Builder()
+                    .setReferenceMessage(id)
+                    .setContent(LocalizedMessage.ERROR_GIVEAWAY_ALREADY_ENTERED.getLocalizedMessage(interaction.getEffectiveLocale()))
+                    .addComponent(new ActionRowComponent(new ButtonComponent(ButtonComponent.Style.DANGER, 
+                            LocalizedMessage.GIVEAWAY_LEAVE.getLocalizedMessage(interaction.getEffectiveLocale()), 
+                            GiveawayManager.LEAVE_BUTTON_ID + ":" + id)))
+                    .setEphemeral(true).build())
+                // busy giveaways have their count updated in batches instead of on every click
+                : bot.getEntryCountUpdater().deferUpdate(g, entered)
+                ? GBCommand.respondSuccess(LocalizedMessage.SUCCESS_ENTERED.getLocalizedMessage(interaction.getEffectiveLocale()))
+                : new MessageCallback(bot.getGiveawayManager().renderGiveaway(g, entered), true);
+        long timeRender = System.nanoTime();
+        increaseMetricValue("ButtonTotalTime", timeRender - timeStart);
+        increaseMetricValue("ButtonRenderTime", timeRender - timeEnter);
+        increaseMetricValue("ButtonEnterTime", timeEnter - timeGive);
+        increaseMetricValue("ButtonRetrieveTime", timeGive - timeStart);
+        return msg;
+    }
+    
+    private InteractionResponse leaveGiveaway(Interaction interaction, String customId)
+    {
+        try
+        {
+            long id = Long.parseLong(customId.split(":")[1]);
+            Giveaway g = bot.getDatabase().getGiveaway(id);
+            return new MessageCallback(new SentMessage.Builder()
+                    .setContent(g == null ? Constants.ERROR + " " + LocalizedMessage.ERROR_GIVEAWAY_ENDED.getLocalizedMessage(interaction.getEffectiveLocale()) 
+                                : bot.getDatabase().removeEntry(id, interaction.getUser()) ? Constants.YAY + " " + LocalizedMessage.SUCCESS_LEAVE.getLocalizedMessage(interaction.getEffectiveLocale()) 
+                                : Constants.ERROR + " " + LocalizedMessage.ERROR_GIVEAWAY_NOT_ENTERED.getLocalizedMessage(interaction.getEffectiveLocale()))
+                    .removeComponents().setEphemeral(true).build(), true);
+        }
+        catch(ArrayIndexOutOfBoundsException | NumberFormatException ignore){}
+        return GBCommand.respondError(LocalizedMessage.ERROR_GENERIC.getLocalizedMessage(interaction.getEffectiveLocale()));
+    }
+    
     private synchronized long increaseMetricValue(String key, long count)
     {
         long val = metrics.getOrDefault(key, 0L);
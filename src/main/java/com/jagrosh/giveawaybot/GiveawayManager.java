@@ -18,31 +18,42 @@ package com.jagrosh.giveawaybot;
 import com.jagrosh.giveawaybot.data.CachedUser;
 import com.jagrosh.giveawaybot.data.Database;
 import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.data.GiveawayPage;
 import com.jagrosh.giveawaybot.data.GuildSettings;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.EmojiParser;
+import com.jagrosh.giveawaybot.entities.EndingQueue;
+import com.jagrosh.giveawaybot.entities.EntryCountUpdater;
 import com.jagrosh.giveawaybot.entities.FileUploader;
+import com.jagrosh.giveawaybot.entities.GiveawayReaper;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.giveawaybot.entities.PremiumLevel;
+import com.jagrosh.giveawaybot.entities.RateLimiter;
+import com.jagrosh.giveawaybot.entities.RestDispatcher;
+import com.jagrosh.giveawaybot.entities.RestDispatcher.Priority;
 import com.jagrosh.giveawaybot.util.FormatUtil;
 import com.jagrosh.giveawaybot.util.GiveawayUtil;
 import com.jagrosh.giveawaybot.util.OtherUtil;
+import com.jagrosh.giveawaybot.util.SampleWindow;
 import com.jagrosh.interactions.components.ActionRowComponent;
 import com.jagrosh.interactions.components.ButtonComponent;
 import com.jagrosh.interactions.components.PartialEmoji;
 import com.jagrosh.interactions.entities.*;
 import com.jagrosh.interactions.receive.Interaction;
-import com.jagrosh.interactions.requests.RestClient;
 import com.jagrosh.interactions.requests.RestClient.RestResponse;
 import com.jagrosh.interactions.requests.Route;
 import com.jagrosh.interactions.util.JsonUtil;
 import java.awt.Color;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,32 +65,63 @@ import org.slf4j.LoggerFactory;
 public class GiveawayManager
 {
     public final static String ENTER_BUTTON_ID = "enter-giveaway",
-                               LEAVE_BUTTON_ID = "leave-giveaway";
+                               LEAVE_BUTTON_ID = "leave-giveaway",
+                               LIST_BUTTON_ID = "list-giveaways",
+                               SUMMARY_URL = "https://cdn.discordapp.com/attachments/%s/%s",
+                               SUMMARY_FILE = "giveaway_summary.json",
+                               SUMMARY_PART_FILE = "giveaway_summary_part%d.json";
     private final static int MINIMUM_SECONDS = 10,
                              MAX_PRIZE_LENGTH = 250,
                              MAX_DESCR_LENGTH = 1000,
-                             FAILURE_COOLDOWN_TIME = 30;
+                             FAILURE_COOLDOWN_TIME = 30,
+                             MAX_SUMMARY_PART_SIZE = 6 * 1024 * 1024,
+                             LIST_PAGE_SIZE = 5,
+                             LIST_PRIZE_LENGTH = 100;
+    private final static int MAX_CONCURRENT_ENDINGS = 16,
+                             BACKLOG_PAGE_SIZE = 200,
+                             PREMIUM_ENDING_WEIGHT = 2,
+                             LAG_SAMPLES = 4096;
+    private final static long ENDING_TIMEOUT = 30000L,
+                              ON_TIME_WINDOW = 60000L,
+                              PROGRESS_INTERVAL = 30000L,
+                              RETRY_DELAY = 30000L,
+                              MAX_RETRY_DELAY = 3600000L;
     private final static Color ENDED_COLOR = new Color(0x2F3136);
     private final static Permission[] REQUIRED_PERMS = { Permission.SEND_MESSAGES, Permission.VIEW_CHANNEL, 
         Permission.READ_MESSAGE_HISTORY, Permission.EMBED_LINKS };
     
     private final Logger log = LoggerFactory.getLogger(GiveawayManager.class);
     private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
-    private final ExecutorService pool = Executors.newCachedThreadPool();
-    private final Map<Long,Instant> latestFailure = new HashMap<>();
+    private final ExecutorService pool = Executors.newFixedThreadPool(MAX_CONCURRENT_ENDINGS);
+    private final EndingQueue endingQueue = new EndingQueue();
+    private final Set<Long> ending = ConcurrentHashMap.newKeySet();
+    private final Map<Long,Integer> retries = new ConcurrentHashMap<>();
+    private final AtomicInteger runningEndings = new AtomicInteger(), 
+                                runningBacklog = new AtomicInteger();
+    private final CatchUp catchUp = new CatchUp();
+    private final SampleWindow endingLag = new SampleWindow(LAG_SAMPLES), 
+                               backlogLag = new SampleWindow(LAG_SAMPLES);
+    private final RateLimiter failureCooldown = new RateLimiter(4096, 1, 1.0 / FAILURE_COOLDOWN_TIME);
     private final Database database;
-    private final RestClient rest;
+    private final RestDispatcher rest;
+    private final GiveawayReaper reaper;
     private final FileUploader uploader;
+    private final EntryCountUpdater entryUpdater;
     private final EmojiParser emojis;
-    private final long clientId;
+    private final long clientId, controlChannel;
     
-    public GiveawayManager(Database database, RestClient rest, FileUploader uploader, EmojiParser emojis, long clientId)
+    public GiveawayManager(Database database, RestDispatcher rest, GiveawayReaper reaper, FileUploader uploader, EmojiParser emojis, long clientId, long controlChannel, 
+            double hotClicksPerSecond, long hotUpdateInterval)
     {
+        this.controlChannel = controlChannel;
         this.database = database;
         this.rest = rest;
+        this.reaper = reaper;
         this.uploader = uploader;
         this.clientId = clientId;
         this.emojis = emojis;
+        this.entryUpdater = new EntryCountUpdater(id -> database.getGiveaway(id) != null && !ending.contains(id), rest, this::renderGiveaway, 
+                hotClicksPerSecond, hotUpdateInterval);
     }
     
     public void start()
@@ -89,9 +131,9 @@ public class GiveawayManager
             try
             {
                 // end giveaways that have run out of time
-                database.getGiveawaysEndingBefore(Instant.now().plusMillis(500))
-                        .stream().parallel()
-                        .forEach(giveaway -> endGiveaway(giveaway));
+                queueEndings();
+                startEndings();
+                catchUp.report();
             }
             catch(Exception ex)
             {
@@ -104,6 +146,128 @@ public class GiveawayManager
     {
         schedule.shutdown();
         pool.shutdown();
+        entryUpdater.shutdown();
+    }
+    
+    private void queueEndings()
+    {
+        // giveaways ending right now always get queued
+        Instant now = Instant.now();
+        Instant overdue = now.minusMillis(ON_TIME_WINDOW);
+        for(Giveaway g: database.getGiveawaysEndingBetween(overdue, now.plusMillis(500)))
+            if(ending.add(g.getMessageId()))
+                endingQueue.add(g, EndingQueue.Lane.ON_TIME, getEndingWeight(g));
+        
+        // overdue giveaways (such as after downtime) are queued a page at a time, oldest first
+        if(endingQueue.size(EndingQueue.Lane.BACKLOG) >= BACKLOG_PAGE_SIZE / 2)
+            return;
+        // giveaways waiting on a retry are skipped, so they can't fill up the page
+        List<Giveaway> backlog = database.getOldestGiveawaysEndingBefore(overdue, BACKLOG_PAGE_SIZE, ending);
+        if(backlog.isEmpty())
+        {
+            if(endingQueue.size(EndingQueue.Lane.BACKLOG) == 0 && runningBacklog.get() == 0)
+                catchUp.finish();
+            return;
+        }
+        catchUp.begin(overdue);
+        for(Giveaway g: backlog)
+            if(ending.add(g.getMessageId()))
+                endingQueue.add(g, EndingQueue.Lane.BACKLOG, getEndingWeight(g));
+    }
+    
+    private void startEndings()
+    {
+        while(runningEndings.get() < MAX_CONCURRENT_ENDINGS)
+        {
+            EndingQueue.Entry e = endingQueue.poll();
+            if(e == null)
+                return;
+            runningEndings.incrementAndGet();
+            boolean backlog = e.lane == EndingQueue.Lane.BACKLOG;
+            if(backlog)
+                runningBacklog.incrementAndGet();
+            pool.execute(() -> 
+            {
+                long id = e.giveaway.getMessageId();
+                try
+                {
+                    endGiveaway(e.giveaway, Deadline.after(ENDING_TIMEOUT), Priority.ENDING);
+                    if(database.getGiveaway(id) == null)
+                        (backlog ? backlogLag : endingLag).add(System.currentTimeMillis() - e.giveaway.getEndInstant().toEpochMilli());
+                }
+                catch(Exception ex)
+                {
+                    log.error("Exception in ending giveaway: ", ex);
+                }
+                finally
+                {
+                    retryOrFinish(id);
+                    if(backlog)
+                    {
+                        runningBacklog.decrementAndGet();
+                        catchUp.done.incrementAndGet();
+                    }
+                    runningEndings.decrementAndGet();
+                    if(!schedule.isShutdown())
+                        schedule.execute(this::startEndings);
+                }
+            });
+        }
+    }
+    
+    // a giveaway that's still in the database didn't end, so it's held back 
+    // from the queue for a while (longer after each failure) and then retried
+    private void retryOrFinish(long id)
+    {
+        if(database.getGiveaway(id) == null || schedule.isShutdown())
+        {
+            retries.remove(id);
+            ending.remove(id);
+            return;
+        }
+        int attempts = retries.merge(id, 1, Integer::sum);
+        long delay = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << Math.min(attempts - 1, 10));
+        schedule.schedule(() -> ending.remove(id), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private int getEndingWeight(Giveaway giveaway)
+    {
+        return database.getPremiumLevel(giveaway.getGuildId()) == PremiumLevel.NONE ? 1 : PREMIUM_ENDING_WEIGHT;
+    }
+    
+    public long getEndedCount()
+    {
+        return endingLag.getCount() + backlogLag.getCount();
+    }
+    
+    public Map<String,Long> getEndingMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        long[] lag = endingLag.getPercentiles(50, 90, 99, 100);
+        map.put("LagP50", lag[0]);
+        map.put("LagP90", lag[1]);
+        map.put("LagP99", lag[2]);
+        map.put("LagMax", lag[3]);
+        map.put("BacklogLagP50", backlogLag.getPercentiles(50)[0]);
+        map.put("Ended", getEndedCount());
+        map.put("Running", (long) runningEndings.get());
+        map.put("Queued", (long) endingQueue.size(EndingQueue.Lane.ON_TIME));
+        map.put("QueuedGuilds", (long) endingQueue.getGuildCount(EndingQueue.Lane.ON_TIME));
+        map.put("Backlog", (long) endingQueue.size(EndingQueue.Lane.BACKLOG));
+        map.put("Retrying", (long) retries.size());
+        return map;
+    }
+    
+    private void sendControlMessage(String message)
+    {
+        if(controlChannel != 0L)
+            rest.submit(Priority.BACKGROUND, "channel:" + controlChannel, "POST_MESSAGE", 
+                    r -> r.request(Route.POST_MESSAGE.format(controlChannel), new SentMessage.Builder().setContent(message).build().toJson()));
+    }
+    
+    public EntryCountUpdater getEntryCountUpdater()
+    {
+        return entryUpdater;
     }
     
     public EmojiParser getEmojiManager()
@@ -116,47 +280,99 @@ public class GiveawayManager
         return String.format(Constants.ADMIN, Long.toString(clientId), Long.toString(guildId));
     }
     
-    public boolean deleteGiveaway(Giveaway giveaway)
+    public boolean deleteGiveaway(Giveaway giveaway, Deadline deadline)
     {
         database.removeGiveaway(giveaway.getMessageId());
         try
         {
-            RestResponse res = rest.request(Route.DELETE_MESSAGE.format(giveaway.getChannelId(), giveaway.getMessageId())).get();
+            RestResponse res = deadline.await(rest.submit(Priority.INTERACTIVE, "channel:" + giveaway.getChannelId(), "DELETE_MESSAGE", 
+                    r -> r.request(Route.DELETE_MESSAGE.format(giveaway.getChannelId(), giveaway.getMessageId()))));
             return res.isSuccess();
         }
-        catch(ExecutionException | InterruptedException ex)
+        catch(ExecutionException | InterruptedException | TimeoutException ex)
         {
             return false;
         }
     }
     
-    public boolean endGiveaway(Giveaway giveaway)
+    public boolean endGiveaway(Giveaway giveaway, Deadline deadline)
+    {
+        // don't race the scheduled ending (or a retry) of the same giveaway
+        if(!ending.add(giveaway.getMessageId()))
+            return false;
+        try
+        {
+            return endGiveaway(giveaway, deadline, Priority.INTERACTIVE);
+        }
+        finally
+        {
+            ending.remove(giveaway.getMessageId());
+        }
+    }
+    
+    public boolean endGiveaway(Giveaway giveaway, Deadline deadline, Priority priority)
     {
+        // skip the whole pipeline while a channel is unusable; the giveaway is 
+        // kept for a retry, and the reaper checks whether the channel is gone
+        String bucket = "channel:" + giveaway.getChannelId();
+        if(rest.isBroken(bucket))
+        {
+            reaper.markSuspect(giveaway.getChannelId());
+            return false;
+        }
+        // an entry count update must not land after the ending
+        entryUpdater.awaitIdle(giveaway, deadline);
+        
+        // the giveaway stays in the database until the message has been edited, 
+        // so that an ending that fails for a temporary reason can be retried
         List<CachedUser> entries = database.getEntriesList(giveaway.getMessageId());
-        database.removeGiveaway(giveaway.getMessageId());
         List<CachedUser> all = new ArrayList<>(entries);
         List<CachedUser> winners = GiveawayUtil.selectWinners(all, giveaway.getWinners());
         CachedUser host = database.getUser(giveaway.getUserId());
         try
         {
-            JSONObject summary = createGiveawaySummary(giveaway, host, entries, winners);
-            String url = uploader.uploadFile(summary.toString(), "giveaway_summary.json");
-            String summaryKey = url == null ? null : url.replaceAll(".*/(\\d+/\\d+)/.*", "$1");
-            rest.request(Route.PATCH_MESSAGE.format(giveaway.getChannelId(), giveaway.getMessageId()), renderGiveaway(giveaway, entries.size(), winners, summaryKey).toJson()).get();
-            rest.request(Route.POST_MESSAGE.format(giveaway.getChannelId()), renderWinnerMessage(giveaway, winners).toJson()).get();
+            String summaryKey = uploadSummary(giveaway, host, entries, winners, deadline);
+            CompletableFuture<RestResponse> patch = rest.submit(priority, bucket, "PATCH_MESSAGE", r -> r.request(Route.PATCH_MESSAGE.format(giveaway.getChannelId(), giveaway.getMessageId()), renderGiveaway(giveaway, entries.size(), winners, summaryKey).toJson()));
+            RestResponse res;
+            try
+            {
+                res = deadline.await(patch);
+            }
+            catch(TimeoutException ex)
+            {
+                // an edit that was already sent can't be taken back, so find out
+                // if it went through instead of retrying with different winners
+                if(patch.isCancelled())
+                    return false;
+                res = patch.get();
+            }
+            if(!res.isSuccess())
+            {
+                reaper.reportChannel(giveaway.getChannelId(), res.getErrorSpecific());
+                if(!isTemporary(res))
+                    database.removeGiveaway(giveaway.getMessageId());
+                return false;
+            }
+            database.removeGiveaway(giveaway.getMessageId());
+            deadline.await(rest.submit(priority, bucket, "POST_MESSAGE", r -> r.request(Route.POST_MESSAGE.format(giveaway.getChannelId()), renderWinnerMessage(giveaway, winners).toJson())));
         }
-        catch(ExecutionException | InterruptedException ex)
+        catch(ExecutionException | InterruptedException | TimeoutException | CancellationException ex)
         {
             return false;
         }
         return true;
     }
     
+    // rate limits, server errors and missing permissions may clear up on their own
+    private static boolean isTemporary(RestResponse res)
+    {
+        return res.getStatus() == 429 || res.getStatus() == 403 || res.getStatus() >= 500;
+    }
+    
     public void checkAvailability(Interaction interaction, PremiumLevel level) throws GiveawayException
     {
         // apply cooldown when giveaway creation fails
-        Instant latest = latestFailure.get(interaction.getGuildId());
-        if(latest != null && latest.until(Instant.now(), ChronoUnit.SECONDS) < FAILURE_COOLDOWN_TIME)
+        if(!failureCooldown.hasTokens(interaction.getGuildId(), 1))
             throw new GiveawayException(LocalizedMessage.ERROR_GIVEAWAY_COOLDOWN);
         
         // check bot permissions
@@ -164,7 +380,8 @@ public class GiveawayManager
             if(!interaction.appHasPermission(p))
                 throw new GiveawayException(LocalizedMessage.ERROR_BOT_PERMISSIONS, getPermsLink(interaction.getGuildId()));
         
-        // check if the maximum number of giveaways has been reached
+        // check if the maximum number of giveaways has been reached; this is 
+        // only an early check, the slot is reserved when the giveaway is sent
         long currentGiveaways = level.perChannelMaxGiveaways ? database.countGiveawaysByChannel(interaction.getChannelId()) : database.countGiveawaysByGuild(interaction.getGuildId());
         if(currentGiveaways >= level.maxGiveaways)
             throw new GiveawayException(LocalizedMessage.ERROR_MAXIMUM_GIVEAWAYS_GUILD, currentGiveaways, level.perChannelMaxGiveaways);
@@ -203,19 +420,34 @@ public class GiveawayManager
         return new Giveaway(user.getIdLong(), Instant.now().plusSeconds(seconds), wins, prize, description);
     }
     
-    public long sendGiveaway(Giveaway giveaway, long guildId, long channelId) throws GiveawayException
+    public long sendGiveaway(Giveaway giveaway, long guildId, long channelId, PremiumLevel level, Deadline deadline) throws GiveawayException
     {
+        // reserve a slot so that concurrent creations can't go over the limit
+        if(!database.reserveGiveaway(guildId, channelId, level))
+        {
+            long currentGiveaways = level.perChannelMaxGiveaways ? database.countGiveawaysByChannel(channelId) : database.countGiveawaysByGuild(guildId);
+            throw new GiveawayException(LocalizedMessage.ERROR_MAXIMUM_GIVEAWAYS_GUILD, currentGiveaways, level.perChannelMaxGiveaways);
+        }
+        boolean created = false;
+        CompletableFuture<RestResponse> post = null;
         try
         {
             giveaway.setGuildId(guildId);
             giveaway.setChannelId(channelId);
             SentMessage sm = renderGiveaway(giveaway, 0);
+            if(rest.isBroken("channel:" + channelId))
+            {
+                failureCooldown.drain(guildId);
+                throw new GiveawayException(LocalizedMessage.ERROR_BOT_PERMISSIONS, String.format(Constants.ADMIN, Long.toString(clientId), Long.toString(guildId)));
+            }
             log.debug("Attempting giveaway creation in " + guildId + ", json: " + sm.toJson());
-            RestResponse res = rest.request(Route.POST_MESSAGE.format(channelId), sm.toJson()).get();
+            post = rest.submit(Priority.INTERACTIVE, "channel:" + channelId, "POST_MESSAGE", r -> r.request(Route.POST_MESSAGE.format(channelId), sm.toJson()));
+            RestResponse res = deadline.await(post);
             log.debug("Attempted to create giveaway, response: " + res.getStatus() + ", " + res.getBody());
             if(!res.isSuccess())
             {
-                latestFailure.put(guildId, Instant.now());
+                failureCooldown.drain(guildId);
+                reaper.reportChannel(channelId, res.getErrorSpecific());
                 if(res.getErrorSpecific() == 50013 || res.getErrorSpecific() == 50001)
                     throw new GiveawayException(LocalizedMessage.ERROR_BOT_PERMISSIONS, String.format(Constants.ADMIN, Long.toString(clientId), Long.toString(guildId)));
                 throw new GiveawayException(LocalizedMessage.ERROR_GENERIC_CREATION);
@@ -234,14 +466,29 @@ public class GiveawayManager
                 log.error(String.format("Odd data received; channel is older than guild! G: %d  C:%d", guildId, channelId));
             }
             
-            database.createGiveaway(giveaway);
+            database.createGiveaway(giveaway, true);
+            created = true;
             return giveaway.getMessageId();
         }
-        catch(InterruptedException | ExecutionException ex)
+        catch(InterruptedException | ExecutionException | TimeoutException ex)
         {
-            latestFailure.put(guildId, Instant.now());
+            // the message may still be posted after we've given up on it, and
+            // it would never be entered or ended, so remove it if it shows up
+            if(post != null && !post.isCancelled())
+                post.thenAccept(late -> 
+                {
+                    if(late.isSuccess())
+                        rest.submit(Priority.BACKGROUND, "channel:" + channelId, "DELETE_MESSAGE", 
+                                r -> r.request(Route.DELETE_MESSAGE.format(channelId, new ReceivedMessage(late.getBody()).getIdLong())));
+                });
+            failureCooldown.drain(guildId);
             throw new GiveawayException(LocalizedMessage.ERROR_GENERIC_CREATION);
         }
+        finally
+        {
+            if(!created)
+                database.cancelReservation(guildId, channelId);
+        }
     }
     
     public SentMessage renderGiveaway(Giveaway giveaway, int numEntries)
@@ -273,6 +520,49 @@ public class GiveawayManager
         return sb.build();
     }
     
+    /**
+     * Renders one page of a guild's active giveaways, in end time order. The 
+     * navigation buttons carry the cursor for the next and previous pages in
+     * their custom ids, formatted as "list-giveaways:endTime:messageId:next".
+     *
+     * @param guildId the guild id
+     * @param endTime the end time of the cursor, in epoch seconds
+     * @param messageId the message id of the cursor
+     * @param forward true for the page after the cursor, false for the page before
+     * @return the rendered page, or null if the guild has no active giveaways
+     */
+    public SentMessage renderGiveawayList(long guildId, long endTime, long messageId, boolean forward)
+    {
+        GiveawayPage page = database.getGiveawayPageByGuild(guildId, endTime, messageId, forward, LIST_PAGE_SIZE);
+        List<Giveaway> list = page.getGiveaways();
+        if(list.isEmpty())
+            return null;
+        StringBuilder sb = new StringBuilder("**Active Giveaways** (")
+                .append(page.getOffset() + 1).append("-").append(page.getOffset() + list.size()).append(" of ").append(page.getTotal()).append(")\n");
+        for(Giveaway giv: list)
+        {
+            String prize = giv.getPrize() == null ? null : FormatUtil.escapeMarkdown(FormatUtil.truncate(giv.getPrize(), LIST_PRIZE_LENGTH));
+            sb.append("\n[`").append(giv.getMessageId()).append("`](").append(giv.getJumpLink()).append(") | <#").append(giv.getChannelId()).append("> | **").append(giv.getWinners())
+                .append("** ").append(FormatUtil.pluralise(giv.getWinners(), "winner", "winners")).append(" | ")
+                .append(prize == null || prize.isEmpty() ? "No prize specified" : "Prize: **" + prize + "**").append(" | ")
+                .append("Host: <@").append(giv.getUserId()).append("> | ")
+                .append("Ends <t:").append(giv.getEndTime()).append(":R>");
+        }
+        Giveaway first = list.get(0), last = list.get(list.size() - 1);
+        SentMessage.Builder mb = new SentMessage.Builder()
+                .setContent(sb.toString())
+                .setAllowedMentions(new AllowedMentions(true));
+        if(page.hasPrevious() || page.hasNext())
+            mb.addComponent(new ActionRowComponent(
+                    new ButtonComponent(ButtonComponent.Style.SECONDARY, "\u25C0", null, 
+                            LIST_BUTTON_ID + ":" + first.getEndTime() + ":" + first.getMessageId() + ":prev", null, !page.hasPrevious()), // ◀
+                    new ButtonComponent(ButtonComponent.Style.SECONDARY, "\u25B6", null, 
+                            LIST_BUTTON_ID + ":" + last.getEndTime() + ":" + last.getMessageId() + ":next", null, !page.hasNext()))); // ▶
+        else
+            mb.removeComponents();
+        return mb.build();
+    }
+    
     public SentMessage renderWinnerMessage(Giveaway giveaway, List<CachedUser> winners)
     {
         return new SentMessage.Builder()
@@ -294,7 +584,94 @@ public class GiveawayManager
         return sb.toString().substring(2);
     }
     
-    private JSONObject createGiveawaySummary(Giveaway giveaway, CachedUser host, List<CachedUser> entries, List<CachedUser> winners)
+    private String uploadSummary(Giveaway giveaway, CachedUser host, List<CachedUser> entries, List<CachedUser> winners, Deadline deadline)
+    {
+        JSONObject summary = createGiveawaySummary(giveaway, host, winners);
+        List<String> parts = splitEntries(entries);
+        
+        // most summaries fit in a single file, so splice the already serialized entries in
+        if(parts.size() <= 1)
+        {
+            String json = summary.toString();
+            return toSummaryKey(uploader.uploadFile(json.substring(0, json.length() - 1) 
+                    + ",\"entries\":[" + (parts.isEmpty() ? "" : parts.get(0)) + "]}", SUMMARY_FILE, deadline));
+        }
+        
+        // larger ones are uploaded in parts, and the summary becomes a manifest of the parts
+        List<CompletableFuture<String>> uploads = new ArrayList<>();
+        for(int i = 0; i < parts.size(); i++)
+            uploads.add(uploader.uploadFileAsync("{\"entries\":[" + parts.get(i) + "]}", String.format(SUMMARY_PART_FILE, i + 1)));
+        JSONArray keys = new JSONArray();
+        try
+        {
+            for(CompletableFuture<String> upload: uploads)
+                keys.put(toSummaryKey(deadline.await(upload)));
+        }
+        catch(ExecutionException | InterruptedException | TimeoutException ex)
+        {
+            log.warn(String.format("Failed to upload summary parts for giveaway %d: %s", giveaway.getMessageId(), ex));
+            return null;
+        }
+        summary.put("num_entries", entries.size()).put("parts", keys);
+        return toSummaryKey(uploader.uploadFile(summary.toString(), SUMMARY_FILE, deadline));
+    }
+    
+    // the part size limit is in encoded bytes, which can be more than the number of chars
+    private List<String> splitEntries(List<CachedUser> entries)
+    {
+        List<String> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        int bytes = 0;
+        for(CachedUser u: entries)
+        {
+            String json = u.toJson().toString();
+            int size = utf8Length(json);
+            if(sb.length() > 0 && bytes + size + 1 > MAX_SUMMARY_PART_SIZE)
+            {
+                parts.add(sb.toString());
+                sb.setLength(0);
+                bytes = 0;
+            }
+            if(sb.length() > 0)
+            {
+                sb.append(',');
+                bytes++;
+            }
+            sb.append(json);
+            bytes += size;
+        }
+        if(sb.length() > 0)
+            parts.add(sb.toString());
+        return parts;
+    }
+    
+    private static int utf8Length(String str)
+    {
+        int len = 0;
+        for(int i = 0; i < str.length(); i++)
+        {
+            char c = str.charAt(i);
+            if(c < 0x80)
+                len += 1;
+            else if(c < 0x800)
+                len += 2;
+            else if(Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1)))
+            {
+                len += 4;
+                i++;
+            }
+            else
+                len += 3;
+        }
+        return len;
+    }
+    
+    private static String toSummaryKey(String url)
+    {
+        return url == null ? null : url.replaceAll(".*/(\\d+/\\d+)/.*", "$1");
+    }
+    
+    private JSONObject createGiveawaySummary(Giveaway giveaway, CachedUser host, List<CachedUser> winners)
     {
         return new JSONObject()
                 .put("giveaway", new JSONObject()
@@ -304,8 +681,7 @@ public class GiveawayManager
                     .put("num_winners", giveaway.getWinners())
                     .put("host", host.toJson())
                     .put("end", giveaway.getEndTime()))
-                .put("winners", JsonUtil.buildArray(winners))
-                .put("entries", JsonUtil.buildArray(entries));
+                .put("winners", JsonUtil.buildArray(winners));
     }
     
     private ButtonComponent createEntryButton(EmojiParser.ParsedEntryButton pe)
@@ -314,4 +690,44 @@ public class GiveawayManager
                     pe.hasEmoji() ? new PartialEmoji(pe.name, pe.id, pe.animated) : null, 
                     ENTER_BUTTON_ID, null, false);
     }
+    
+    // tracks progress through a backlog of overdue giveaways
+    private class CatchUp
+    {
+        private final AtomicLong done = new AtomicLong();
+        private volatile boolean active = false;
+        private long total, started, lastReport;
+        
+        private void begin(Instant overdue)
+        {
+            if(active)
+                return;
+            total = database.countGiveawaysEndingBefore(overdue);
+            started = lastReport = System.currentTimeMillis();
+            done.set(0);
+            active = true;
+            sendControlMessage(String.format("%s Catching up on `%,d` overdue giveaways", Constants.TADA, total));
+        }
+        
+        private void report()
+        {
+            long now = System.currentTimeMillis();
+            if(!active || now - lastReport < PROGRESS_INTERVAL)
+                return;
+            lastReport = now;
+            long finished = done.get();
+            long eta = finished == 0 ? 0 : (now - started) * Math.max(0, total - finished) / finished / 1000;
+            sendControlMessage(String.format("%s `%,d` overdue, `%,d` done, ETA %s", Constants.TADA, total, finished, 
+                    finished == 0 ? "unknown" : FormatUtil.secondsToTime(Math.max(1, eta)).replace("*", "")));
+        }
+        
+        private void finish()
+        {
+            if(!active)
+                return;
+            active = false;
+            sendControlMessage(String.format("%s Caught up! Ended `%,d` overdue giveaways in %s", Constants.TADA, done.get(), 
+                    FormatUtil.secondsToTime(Math.max(1, (System.currentTimeMillis() - started) / 1000)).replace("*", "")));
+        }
+    }
 }
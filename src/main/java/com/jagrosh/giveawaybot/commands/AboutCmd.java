@@ -17,6 +17,7 @@ package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.Constants;
 import com.jagrosh.giveawaybot.GiveawayBot;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.entities.Embed;
@@ -26,6 +27,8 @@ import com.jagrosh.interactions.receive.Interaction;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import com.jagrosh.interactions.responses.MessageCallback;
 import java.awt.Color;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -36,6 +39,7 @@ public class AboutCmd extends GBCommand
     private final static String YAY = "<:yay:585696613507399692>";
     private final static String STATS = "\uD83D\uDCCA "; // 📊
     private final static String LINKS = "\uD83C\uDF10 "; // 🌐
+    private final Map<WebLocale,Response> responses = new ConcurrentHashMap<>();
     
     public AboutCmd(GiveawayBot bot)
     {
@@ -46,12 +50,26 @@ public class AboutCmd extends GBCommand
                 .setDescription("show information about the bot")
                 .setDmPermission(false)
                 .build();
+        this.deferrable = false;
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction)
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline)
     {
         WebLocale wl = interaction.getEffectiveLocale();
+        long giveaways = bot.getStatistics().getActiveGiveaways(), servers = bot.getStatistics().getServerCount();
+        // the response is only rendered again when the counts change
+        Response response = responses.get(wl);
+        if(response == null || response.giveaways != giveaways || response.servers != servers)
+        {
+            response = new Response(giveaways, servers, render(wl, giveaways, servers));
+            responses.put(wl, response);
+        }
+        return response.callback;
+    }
+    
+    private MessageCallback render(WebLocale wl, long giveaways, long servers)
+    {
         return new MessageCallback(new SentMessage.Builder()
                 .setContent(YAY + " " + LocalizedMessage.INFO_ABOUT.getLocalizedMessage(wl, "**GiveawayBot**") + " " + YAY)
                 .addEmbed(new Embed.Builder()
@@ -59,12 +77,25 @@ public class AboutCmd extends GBCommand
                         .setColor(new Color(0x5865F2))
                         .setDescription(LocalizedMessage.INFO_ABOUT_LONG.getLocalizedMessage(wl))
                         .addField(STATS + LocalizedMessage.INFO_ABOUT_STATS.getLocalizedMessage(wl), 
-                                      LocalizedMessage.INFO_ABOUT_STATS_GIVEAWAYS.getLocalizedMessage(wl, bot.getDatabase().countAllGiveaways()) 
-                                 + "\n" + LocalizedMessage.INFO_ABOUT_STATS_SERVERS.getLocalizedMessage(wl, bot.getServerCount()), true)
+                                      LocalizedMessage.INFO_ABOUT_STATS_GIVEAWAYS.getLocalizedMessage(wl, giveaways) 
+                                 + "\n" + LocalizedMessage.INFO_ABOUT_STATS_SERVERS.getLocalizedMessage(wl, servers), true)
                         .addField(LINKS + LocalizedMessage.INFO_ABOUT_LINKS.getLocalizedMessage(wl), 
                                 "[" + LocalizedMessage.INFO_ABOUT_LINKS_WEBSITE.getLocalizedMessage(wl) + "](" + Constants.WEBSITE 
                                 + ")\n[" + LocalizedMessage.INFO_ABOUT_LINKS_INVITE.getLocalizedMessage(wl) + "](" + Constants.INVITE 
                                 + ")\n[" + LocalizedMessage.INFO_ABOUT_LINKS_SUPPORT.getLocalizedMessage(wl) + "](" + Constants.SUPPORT + ")", true)
                 .build()).setEphemeral(true).build());
     }
+    
+    private static class Response
+    {
+        private final long giveaways, servers;
+        private final MessageCallback callback;
+        
+        private Response(long giveaways, long servers, MessageCallback callback)
+        {
+            this.giveaways = giveaways;
+            this.servers = servers;
+            this.callback = callback;
+        }
+    }
 }
@@ -17,6 +17,7 @@ package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.PremiumLevel;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.components.ActionRowComponent;
@@ -46,6 +47,7 @@ public class CreateCmd extends GBCommand
                 .setDmPermission(false)
                 .setDefaultPermissions(Permission.MANAGE_GUILD)
                 .build();
+        this.deferrable = false;
         components.add(new ActionRowComponent(new TextInputComponent("time", TextInputComponent.Style.SHORT, "Duration", 2, null, true, null, "Ex: 10 minutes")));
         components.add(new ActionRowComponent(new TextInputComponent("winners", TextInputComponent.Style.SHORT, "Number of Winners", 1, 2, true, "1", null)));
         components.add(new ActionRowComponent(new TextInputComponent("prize", TextInputComponent.Style.SHORT, "Prize", 1, 128, true, null, null)));
@@ -53,7 +55,7 @@ public class CreateCmd extends GBCommand
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         PremiumLevel pl = bot.getDatabase().getPremiumLevel(interaction.getGuildId(), interaction.getMember().getIdLong());
         
@@ -18,6 +18,7 @@ package com.jagrosh.giveawaybot.commands;
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
 import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.command.ApplicationCommandOption;
@@ -45,7 +46,7 @@ public class DeleteCmd extends GBCommand
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         String sid = interaction.getCommandData().getOptionByName("giveaway_id").getStringValue().split("~")[0].trim();
         long id = -1;
@@ -61,7 +62,7 @@ public class DeleteCmd extends GBCommand
         if(g == null || g.getGuildId() != interaction.getGuildId())
             return respondError(LocalizedMessage.ERROR_GIVEAWAY_NOT_FOUND.getLocalizedMessage(interaction.getEffectiveLocale(), id+""));
         
-        boolean success = bot.getGiveawayManager().deleteGiveaway(g);
+        boolean success = bot.getGiveawayManager().deleteGiveaway(g, deadline);
         
         if(success)
             return respondSuccess(LocalizedMessage.SUCCESS_GIVEAWAY_DELETE.getLocalizedMessage(interaction.getEffectiveLocale(), id+""));
@@ -18,6 +18,7 @@ package com.jagrosh.giveawaybot.commands;
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
 import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.command.ApplicationCommandOption;
@@ -45,7 +46,7 @@ public class EndCmd extends GBCommand
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         //bot.getGiveawayManager().checkPermission(interaction.getMember(), interaction.getGuildId());
         
@@ -63,7 +64,7 @@ public class EndCmd extends GBCommand
         if(g == null || g.getGuildId() != interaction.getGuildId())
             return respondError(LocalizedMessage.ERROR_GIVEAWAY_NOT_FOUND.getLocalizedMessage(interaction.getEffectiveLocale(), id+""));
         
-        boolean success = bot.getGiveawayManager().endGiveaway(g);
+        boolean success = bot.getGiveawayManager().endGiveaway(g, deadline);
         
         if(success)
             return respondSuccess(LocalizedMessage.SUCCESS_GIVEAWAY_ENDED.getLocalizedMessage(interaction.getEffectiveLocale(), id+""));
@@ -19,21 +19,20 @@ import com.jagrosh.giveawaybot.Constants;
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
 import com.jagrosh.giveawaybot.data.GuildSettings;
+import com.jagrosh.giveawaybot.entities.Deadline;
+import com.jagrosh.giveawaybot.entities.DuplicateFilter;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.command.Command;
-import com.jagrosh.interactions.entities.Guild;
 import com.jagrosh.interactions.entities.SentMessage;
 import com.jagrosh.interactions.receive.Interaction;
-import com.jagrosh.interactions.requests.Route;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import com.jagrosh.interactions.responses.MessageCallback;
 import java.time.Instant;
-import java.util.HashSet;
-import java.util.Set;
-import org.json.JSONObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  *
@@ -41,10 +40,11 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class GBCommand implements Command
 {
-    private final Logger log = LoggerFactory.getLogger(GBCommand.class);
-    private final Set<Long> currentlyUpdating = new HashSet<>();
+    private final static long RESPONSE_TIMEOUT = 2500L,
+                              FIRST_REFRESH_WAIT = 5000L;
     protected final GiveawayBot bot;
     protected ApplicationCommand app;
+    protected boolean deferrable = true, deferEphemeral = true;
     
     protected GBCommand(GiveawayBot bot)
     {
@@ -64,36 +64,52 @@ public abstract class GBCommand implements Command
         if(interaction.getGuildId() == 0L)
             return new MessageCallback(new SentMessage.Builder().setContent(LocalizedMessage.ERROR_NO_DMS.getLocalizedMessage(interaction.getEffectiveLocale())).build());
         
+        // a retried delivery gets the same response as the first one
+        return bot.getDuplicateFilter().execute(interaction.getToken(), DuplicateFilter.INTERACTION_WINDOW, () -> 
+        {
+            // reject spam before doing any work
+            if(!bot.allowInteraction(interaction.getUser().getIdLong(), interaction.getGuildId()))
+                return respondError(LocalizedMessage.ERROR_RATE_LIMITED.getLocalizedMessage(interaction.getEffectiveLocale()));
+
+            // commands that can't be deferred (such as opening a modal) must run inline
+            if(!deferrable)
+                return run(interaction, Deadline.after(RESPONSE_TIMEOUT));
+            return bot.getDeferredExecutor().execute(getClass().getSimpleName(), interaction, deferEphemeral, deadline -> run(interaction, deadline));
+        });
+    }
+    
+    private InteractionResponse run(Interaction interaction, Deadline deadline)
+    {
         // update cached user for interaction
         bot.getDatabase().updateUser(interaction.getUser());
         
-        // update cached guild info
+        // refresh cached guild info in the background if it's stale
         GuildSettings gs = bot.getDatabase().getSettings(interaction.getGuildId());
-        Instant now = Instant.now();
-        long gid = interaction.getGuildId();
-        if(gs.getLatestRetrieval().plusSeconds(60*20).isBefore(now) && !currentlyUpdating.contains(gid))
+        if(gs.getLatestRetrieval().plusSeconds(60*20).isBefore(Instant.now()))
         {
-            currentlyUpdating.add(gid);
-            Guild g;
-            try
-            {
-                JSONObject gjson = bot.getRestClient().request(Route.GET_GUILD.format(gid), "").get().getBody();
-                //log.info(String.format("Retrieved guild: " + gjson));
-                g = new Guild(gjson);
-            }
-            catch(Exception ex) 
+            boolean first = gs.getLatestRetrieval().getEpochSecond() == 0L;
+            CompletableFuture<Void> refresh = bot.getGuildRefresher().request(interaction.getGuildId(), first);
+            
+            // a new guild only has default settings (no owner, so no premium), so wait for 
+            // the real ones, unless this has to be answered inline
+            if(first && deferrable)
             {
-                g = null;
-                log.error(String.format("Failed to retrieve guild: %s", ex));
+                try
+                {
+                    refresh.get(Math.min(FIRST_REFRESH_WAIT, deadline.remaining()), TimeUnit.MILLISECONDS);
+                }
+                catch(ExecutionException | TimeoutException ignore) {}
+                catch(InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
             }
-            bot.getDatabase().setAutomaticGuildSettings(interaction.getGuildId(), now, g);
-            currentlyUpdating.remove(gid);
         }
         
         // attempt to run command
         try
         {
-            return gbExecute(interaction);
+            return gbExecute(interaction, deadline);
         }
         catch (GiveawayException ex)
         {
@@ -101,7 +117,7 @@ public abstract class GBCommand implements Command
         }
     }
     
-    protected abstract InteractionResponse gbExecute(Interaction interaction) throws GiveawayException;
+    protected abstract InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException;
     
     public static MessageCallback respondSuccess(String content)
     {
@@ -16,6 +16,7 @@
 package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.GiveawayBot;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.entities.Embed;
@@ -25,6 +26,8 @@ import com.jagrosh.interactions.receive.Interaction;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import com.jagrosh.interactions.responses.MessageCallback;
 import java.awt.Color;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  *
@@ -33,6 +36,7 @@ import java.awt.Color;
 public class HelpCmd extends GBCommand
 {
     private final static String YAY = "<:yay:585696613507399692>";
+    private final Map<WebLocale,MessageCallback> responses = new EnumMap<>(WebLocale.class);
     
     public HelpCmd(GiveawayBot bot)
     {
@@ -43,12 +47,22 @@ public class HelpCmd extends GBCommand
                 .setDescription("shows commands")
                 .setDmPermission(false)
                 .build();
+        this.deferrable = false;
+        
+        // the help message never changes, so build it once for every locale
+        for(WebLocale wl: WebLocale.values())
+            responses.put(wl, render(wl));
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction)
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline)
+    {
+        MessageCallback response = responses.get(interaction.getEffectiveLocale());
+        return response == null ? render(interaction.getEffectiveLocale()) : response;
+    }
+    
+    private MessageCallback render(WebLocale wl)
     {
-        WebLocale wl = interaction.getEffectiveLocale();
         String prefix = "/" + bot.getCommandPrefix();
         return new MessageCallback(new SentMessage.Builder()
                 .setContent(YAY + " **GiveawayBot** Commands " + YAY)
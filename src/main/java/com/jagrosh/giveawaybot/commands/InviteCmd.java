@@ -17,10 +17,15 @@ package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.Constants;
 import com.jagrosh.giveawaybot.GiveawayBot;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.interactions.command.ApplicationCommand;
+import com.jagrosh.interactions.entities.WebLocale;
 import com.jagrosh.interactions.receive.Interaction;
 import com.jagrosh.interactions.responses.InteractionResponse;
+import com.jagrosh.interactions.responses.MessageCallback;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  *
@@ -29,6 +34,7 @@ import com.jagrosh.interactions.responses.InteractionResponse;
 public class InviteCmd extends GBCommand
 {
     private final static String LINK = "\uD83D\uDD17"; // 🔗
+    private final Map<WebLocale,MessageCallback> responses = new EnumMap<>(WebLocale.class);
     
     public InviteCmd(GiveawayBot bot)
     {
@@ -39,11 +45,20 @@ public class InviteCmd extends GBCommand
                 .setDescription("add the bot to your own server")
                 .setDmPermission(false)
                 .build();
+        this.deferrable = false;
+        for(WebLocale wl: WebLocale.values())
+            responses.put(wl, render(wl));
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction)
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline)
     {
-        return respondSuccess(LocalizedMessage.INFO_INVITE.getLocalizedMessage(interaction.getEffectiveLocale()) + "\n\n" + LINK + " **<" + Constants.INVITE + ">**");
+        MessageCallback response = responses.get(interaction.getEffectiveLocale());
+        return response == null ? render(interaction.getEffectiveLocale()) : response;
+    }
+    
+    private static MessageCallback render(WebLocale wl)
+    {
+        return respondSuccess(LocalizedMessage.INFO_INVITE.getLocalizedMessage(wl) + "\n\n" + LINK + " **<" + Constants.INVITE + ">**");
     }
 }
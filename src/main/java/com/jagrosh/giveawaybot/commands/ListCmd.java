@@ -17,19 +17,14 @@ package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
-import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
-import com.jagrosh.giveawaybot.util.FormatUtil;
 import com.jagrosh.interactions.command.ApplicationCommand;
-import com.jagrosh.interactions.entities.AllowedMentions;
 import com.jagrosh.interactions.entities.Permission;
 import com.jagrosh.interactions.entities.SentMessage;
 import com.jagrosh.interactions.receive.Interaction;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import com.jagrosh.interactions.responses.MessageCallback;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
 
 /**
  *
@@ -47,31 +42,17 @@ public class ListCmd extends GBCommand
                 .setDmPermission(false)
                 .setDefaultPermissions(Permission.MANAGE_GUILD)
                 .build();
+        this.deferEphemeral = false;
     }
     
     @Override
-    protected InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    protected InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         //bot.getGiveawayManager().checkPermission(interaction.getMember(), interaction.getGuildId());
         
-        List<Giveaway> list = bot.getDatabase().getGiveawaysByGuild(interaction.getGuildId());
-        if(list.isEmpty())
+        SentMessage page = bot.getGiveawayManager().renderGiveawayList(interaction.getGuildId(), Long.MIN_VALUE, Long.MIN_VALUE, true);
+        if(page == null)
             return respondError(LocalizedMessage.WARNING_NO_GIVEAWAYS.getLocalizedMessage(interaction.getEffectiveLocale()));
-        //Color c = bot.getDatabase().getSettings(interaction.getGuildId()).getColor();
-        StringBuilder sb = new StringBuilder("**Active Giveaways**\n");
-        list.forEach(giv -> 
-        {
-            sb.append("\n[`").append(giv.getMessageId()).append("`](").append(giv.getJumpLink()).append(") | <#").append(giv.getChannelId()).append("> | **").append(giv.getWinners())
-                .append("** ").append(FormatUtil.pluralise(giv.getWinners(), "winner", "winners")).append(" | ")
-                .append(giv.getPrize() == null || giv.getPrize().isEmpty() ? "No prize specified" : "Prize: **" + giv.getPrize() + "**").append(" | ")
-                .append("Host: <@").append(giv.getUserId()).append("> | ")
-                .append("Ends in ").append(FormatUtil.secondsToTime(Instant.now().until(giv.getEndInstant(), ChronoUnit.SECONDS)));
-            
-        });
-        return new MessageCallback(new SentMessage.Builder()
-                .setContent(sb.toString())
-                .setAllowedMentions(new AllowedMentions(true))
-                //.addEmbed(new Embed.Builder().setTitle("Active Giveaways", null).setColor(c).setDescription(sb.toString()).build())
-                .build());
+        return new MessageCallback(page);
     }
 }
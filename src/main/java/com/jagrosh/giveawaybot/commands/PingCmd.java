@@ -16,9 +16,11 @@
 package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.GiveawayBot;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.receive.Interaction;
 import com.jagrosh.interactions.responses.InteractionResponse;
+import com.jagrosh.interactions.responses.MessageCallback;
 
 /**
  *
@@ -26,6 +28,8 @@ import com.jagrosh.interactions.responses.InteractionResponse;
  */
 public class PingCmd extends GBCommand
 {
+    private final static MessageCallback PONG = respondSuccess("Pong!");
+    
     public PingCmd(GiveawayBot bot)
     {
         super(bot);
@@ -35,11 +39,12 @@ public class PingCmd extends GBCommand
                 .setDescription("check if the bot is online")
                 .setDmPermission(false)
                 .build();
+        this.deferrable = false;
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction)
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline)
     {
-        return respondSuccess("Pong!");
+        return PONG;
     }
 }
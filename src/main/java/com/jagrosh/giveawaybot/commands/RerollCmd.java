@@ -18,7 +18,9 @@ package com.jagrosh.giveawaybot.commands;
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
 import static com.jagrosh.giveawaybot.commands.GBCommand.respondError;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
+import com.jagrosh.giveawaybot.entities.RestDispatcher.Priority;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.command.ApplicationCommandOption;
 import com.jagrosh.interactions.entities.Permission;
@@ -29,6 +31,7 @@ import com.jagrosh.interactions.requests.RestClient.RestResponse;
 import com.jagrosh.interactions.requests.Route;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import org.json.JSONObject;
 
 /**
@@ -52,7 +55,7 @@ public class RerollCmd extends RerollMessageCmd
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         long msgId = interaction.getCommandData().getOptionByName("giveaway_id").getIdValue();
         CommandInteractionDataOption countOpt = interaction.getCommandData().getOptionByName("count");
@@ -64,13 +67,14 @@ public class RerollCmd extends RerollMessageCmd
             return respondError(LocalizedMessage.ERROR_BOT_PERMISSIONS.getLocalizedMessage(interaction.getEffectiveLocale(), bot.getGiveawayManager().getPermsLink(interaction.getGuildId())));
         try
         {
-            RestResponse res = bot.getRestClient().request(Route.GET_MESSAGE.format(interaction.getChannelId(), msgId)).get();
+            RestResponse res = deadline.await(bot.getRestDispatcher().submit(Priority.INTERACTIVE, "channel:" + interaction.getChannelId(), "GET_MESSAGE", 
+                    r -> r.request(Route.GET_MESSAGE.format(interaction.getChannelId(), msgId))));
             if(!res.isSuccess())
                 return respondError(LocalizedMessage.ERROR_MESSAGE_NOT_FOUND.getLocalizedMessage(interaction.getEffectiveLocale(), msgId) + tip);
             JSONObject json = res.getBody();
-            return rerollGiveaway(interaction, new ReceivedMessage(json), count);
+            return rerollGiveaway(interaction, new ReceivedMessage(json), count, deadline);
         }
-        catch(ExecutionException | InterruptedException ex)
+        catch(ExecutionException | InterruptedException | TimeoutException ex)
         {
             return respondError(LocalizedMessage.ERROR_MESSAGE_NOT_FOUND.getLocalizedMessage(interaction.getEffectiveLocale(), msgId) + tip);
         }
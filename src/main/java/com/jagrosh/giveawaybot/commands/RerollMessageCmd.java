@@ -17,8 +17,12 @@ package com.jagrosh.giveawaybot.commands;
 
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
+import com.jagrosh.giveawaybot.GiveawayManager;
+import com.jagrosh.giveawaybot.entities.Deadline;
+import com.jagrosh.giveawaybot.entities.EntrantPoolCache;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.giveawaybot.util.GiveawayUtil;
+import com.jagrosh.giveawaybot.util.SummaryScanner;
 import com.jagrosh.interactions.command.ApplicationCommand;
 import com.jagrosh.interactions.components.ActionRowComponent;
 import com.jagrosh.interactions.components.ButtonComponent;
@@ -27,10 +31,10 @@ import com.jagrosh.interactions.entities.Permission;
 import com.jagrosh.interactions.entities.ReceivedMessage;
 import com.jagrosh.interactions.entities.SentMessage;
 import com.jagrosh.interactions.receive.Interaction;
-import com.jagrosh.interactions.requests.RestClient;
 import com.jagrosh.interactions.responses.InteractionResponse;
 import com.jagrosh.interactions.responses.MessageCallback;
-import com.jagrosh.interactions.util.JsonUtil;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -52,16 +56,17 @@ public class RerollMessageCmd extends GBCommand
                 .setDmPermission(false)
                 .setDefaultPermissions(Permission.MANAGE_GUILD)
                 .build();
+        this.deferEphemeral = false;
     }
     
     @Override
-    public InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    public InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         ReceivedMessage msg = interaction.getCommandData().getResolvedData().getMessages().get(interaction.getCommandData().getTargetId());
-        return rerollGiveaway(interaction, msg, 1);
+        return rerollGiveaway(interaction, msg, 1, deadline);
     }
     
-    protected InteractionResponse rerollGiveaway(Interaction interaction, ReceivedMessage msg, int count)
+    protected InteractionResponse rerollGiveaway(Interaction interaction, ReceivedMessage msg, int count, Deadline deadline)
     {
         String summaryKey;
         try
@@ -84,22 +89,23 @@ public class RerollMessageCmd extends GBCommand
             return GBCommand.respondError(LocalizedMessage.ERROR_INVALID_MESSAGE.getLocalizedMessage(interaction.getEffectiveLocale()));
         }
         
-        // reroll
-        String url = "https://cdn.discordapp.com/attachments/" + summaryKey + "/giveaway_summary.json";
+        long msgId = msg.getIdLong();
         try
         {
-            RestClient.RestResponse res = bot.getRestClient().simpleRequest(url).get();
-            List<Long> entries = JsonUtil.optArray(res.getBody(), "entries", user -> user.getLong("id"));
-            List<Long> winner = GiveawayUtil.selectWinners(entries, count);
+            EntrantPoolCache cache = bot.getEntrantPoolCache();
+            EntrantPoolCache.Pool pool = cache.get(summaryKey);
+            if(pool == null)
+                pool = downloadPool(summaryKey, deadline);
+            List<Long> winner = cache.selectWinners(pool, count);
             if(winner.isEmpty())
                 return GBCommand.respondError(LocalizedMessage.ERROR_GENERIC_REROLL.getLocalizedMessage(interaction.getEffectiveLocale()));
             StringBuilder winStr = new StringBuilder();
             winner.forEach(w -> winStr.append(", <@").append(w).append(">"));
             return new MessageCallback(new SentMessage.Builder()
                     .setAllowedMentions(new AllowedMentions(AllowedMentions.ParseType.USERS))
-                    .setReferenceMessage(msg.getIdLong())
+                    .setReferenceMessage(msgId)
                     .setContent(LocalizedMessage.SUCCESS_GIVEAWAY_REROLL.getLocalizedMessage(interaction.getEffectiveLocale(), "<@" + interaction.getUser().getIdLong() + ">", winStr.substring(2)) 
-                            + " [\u2197](" + String.format(JUMP_LINK, interaction.getGuildId(), interaction.getChannelId(), msg.getIdLong()) + ")") // ↗
+                            + " [\u2197](" + String.format(JUMP_LINK, interaction.getGuildId(), interaction.getChannelId(), msgId) + ")") // ↗
                     .build());
         } 
         catch(Exception ex)
@@ -108,4 +114,29 @@ public class RerollMessageCmd extends GBCommand
             return GBCommand.respondError(LocalizedMessage.ERROR_GENERIC_REROLL.getLocalizedMessage(interaction.getEffectiveLocale()));
         }
     }
+    
+    private EntrantPoolCache.Pool downloadPool(String summaryKey, Deadline deadline) throws IOException
+    {
+        SummaryScanner.Summary summary = downloadSummary(summaryKey, GiveawayManager.SUMMARY_FILE, deadline);
+        if(!summary.isManifest())
+            return bot.getEntrantPoolCache().put(summaryKey, summary.entries, summary.winners);
+        
+        // large summaries are split into parts, so only hold one at a time
+        long[] entries = new long[Math.max(0, summary.numEntries)];
+        int size = 0;
+        for(int i = 0; i < summary.parts.size(); i++)
+        {
+            long[] part = downloadSummary(summary.parts.get(i), String.format(GiveawayManager.SUMMARY_PART_FILE, i + 1), deadline).entries;
+            if(size + part.length > entries.length)
+                entries = Arrays.copyOf(entries, size + part.length);
+            System.arraycopy(part, 0, entries, size, part.length);
+            size += part.length;
+        }
+        return bot.getEntrantPoolCache().put(summaryKey, size == entries.length ? entries : Arrays.copyOf(entries, size), summary.winners);
+    }
+    
+    private SummaryScanner.Summary downloadSummary(String summaryKey, String filename, Deadline deadline) throws IOException
+    {
+        return bot.getFileUploader().downloadFile(String.format(GiveawayManager.SUMMARY_URL, summaryKey, filename), deadline, SummaryScanner::scan);
+    }
 }
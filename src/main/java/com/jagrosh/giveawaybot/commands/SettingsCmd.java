@@ -19,6 +19,7 @@ import com.jagrosh.giveawaybot.Constants;
 import com.jagrosh.giveawaybot.GiveawayBot;
 import com.jagrosh.giveawaybot.GiveawayException;
 import com.jagrosh.giveawaybot.data.GuildSettings;
+import com.jagrosh.giveawaybot.entities.Deadline;
 import com.jagrosh.giveawaybot.entities.EmojiParser;
 import com.jagrosh.giveawaybot.entities.LocalizedMessage;
 import com.jagrosh.giveawaybot.entities.PremiumLevel;
@@ -63,10 +64,11 @@ public class SettingsCmd extends GBCommand
                 .setDmPermission(false)
                 .setDefaultPermissions(Permission.MANAGE_GUILD)
                 .build();
+        this.deferEphemeral = false;
     }
     
     @Override
-    protected InteractionResponse gbExecute(Interaction interaction) throws GiveawayException
+    protected InteractionResponse gbExecute(Interaction interaction, Deadline deadline) throws GiveawayException
     {
         // permission check
         // this one is intentionally different from standard check for creating giveaways
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory view of all active giveaways, indexed by id, guild, channel and
+ * end time. The view is loaded from the database at startup and updated
+ * whenever a giveaway is created or removed, so reads never need a query.
+ * Writes are serialized; the guild and channel indexes hold immutable lists
+ * that are replaced on every change, so readers always see a consistent
+ * list without locking.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+class ActiveGiveaways
+{
+    private final Map<Long,Giveaway> byId = new ConcurrentHashMap<>();
+    private final Map<Long,List<Giveaway>> byGuild = new ConcurrentHashMap<>(), 
+                                           byChannel = new ConcurrentHashMap<>();
+    private final Map<Long,List<Suggestion>> suggestions = new ConcurrentHashMap<>();
+    private final static Comparator<Giveaway> END_ORDER = Comparator.comparingLong(Giveaway::getEndTime).thenComparingLong(Giveaway::getMessageId);
+    
+    private final ConcurrentSkipListSet<Giveaway> byEndTime = new ConcurrentSkipListSet<>(END_ORDER);
+    
+    public synchronized void load(Collection<Giveaway> giveaways)
+    {
+        byId.clear();
+        byGuild.clear();
+        byChannel.clear();
+        suggestions.clear();
+        byEndTime.clear();
+        giveaways.forEach(this::add);
+    }
+    
+    public synchronized void add(Giveaway giveaway)
+    {
+        remove(giveaway.getMessageId());
+        byId.put(giveaway.getMessageId(), giveaway);
+        byGuild.put(giveaway.getGuildId(), withSorted(byGuild.get(giveaway.getGuildId()), giveaway));
+        byChannel.put(giveaway.getChannelId(), with(byChannel.get(giveaway.getChannelId()), giveaway));
+        suggestions.put(giveaway.getChannelId(), with(suggestions.get(giveaway.getChannelId()), new Suggestion(giveaway)));
+        byEndTime.add(giveaway);
+    }
+    
+    public synchronized Giveaway remove(long id)
+    {
+        Giveaway g = byId.remove(id);
+        if(g == null)
+            return null;
+        byEndTime.remove(g);
+        replace(byGuild, g.getGuildId(), without(byGuild.get(g.getGuildId()), id));
+        replace(byChannel, g.getChannelId(), without(byChannel.get(g.getChannelId()), id));
+        List<Suggestion> sugg = new ArrayList<>(suggestions.get(g.getChannelId()));
+        sugg.removeIf(su -> su.giveaway.getMessageId() == id);
+        replace(suggestions, g.getChannelId(), Collections.unmodifiableList(sugg));
+        return g;
+    }
+    
+    public Giveaway get(long id)
+    {
+        return byId.get(id);
+    }
+    
+    public List<Giveaway> getByGuild(long guildId)
+    {
+        return byGuild.getOrDefault(guildId, Collections.emptyList());
+    }
+    
+    /**
+     * Gets a page of a guild's giveaways in end time order, next to a cursor.
+     *
+     * @param guildId the guild id
+     * @param endTime the end time of the cursor, in epoch seconds
+     * @param messageId the message id of the cursor
+     * @param forward true for the page after the cursor, false for the page before
+     * @param size the page size
+     * @return the page
+     */
+    public GiveawayPage getPageByGuild(long guildId, long endTime, long messageId, boolean forward, int size)
+    {
+        List<Giveaway> list = getByGuild(guildId);
+        int i = Collections.binarySearch(list, bound(endTime, messageId), END_ORDER);
+        int from, to;
+        if(forward)
+        {
+            from = i >= 0 ? i + 1 : -(i + 1);
+            // the rest of the list may have ended, so show the last full page instead
+            if(from >= list.size())
+                from = Math.max(0, list.size() - size);
+            to = Math.min(list.size(), from + size);
+        }
+        else
+        {
+            to = i >= 0 ? i : -(i + 1);
+            from = Math.max(0, to - size);
+            if(from == 0)
+                to = Math.min(list.size(), size);
+        }
+        return new GiveawayPage(new ArrayList<>(list.subList(from, to)), from, list.size());
+    }
+    
+    public List<Giveaway> getByChannel(long channelId)
+    {
+        return byChannel.getOrDefault(channelId, Collections.emptyList());
+    }
+    
+    /**
+     * Finds giveaways in a channel matching what the user has typed. Prize 
+     * prefix matches come first, then id prefix matches, then substring
+     * matches on the prize or id.
+     *
+     * @param channelId the channel id
+     * @param query the text typed so far
+     * @param limit the maximum number of giveaways to return
+     * @return the matching giveaways, best matches first
+     */
+    public List<Giveaway> search(long channelId, String query, int limit)
+    {
+        List<Suggestion> list = suggestions.getOrDefault(channelId, Collections.emptyList());
+        String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        List<List<Giveaway>> ranks = new ArrayList<>(3);
+        for(int i = 0; i < 3; i++)
+            ranks.add(new ArrayList<>());
+        for(Suggestion su: list)
+        {
+            int rank = su.rank(q);
+            if(rank >= 0 && ranks.get(rank).size() < limit)
+                ranks.get(rank).add(su.giveaway);
+            if(ranks.get(0).size() >= limit)
+                break;
+        }
+        List<Giveaway> results = new ArrayList<>(Math.min(limit, list.size()));
+        for(List<Giveaway> r: ranks)
+            for(Giveaway g: r)
+                if(results.size() < limit)
+                    results.add(g);
+        return results;
+    }
+    
+    public int size()
+    {
+        return byId.size();
+    }
+    
+    /**
+     * Gets giveaways by end time, oldest first.
+     *
+     * @param start the earliest end time, inclusive, in epoch seconds
+     * @param end the latest end time, exclusive, in epoch seconds
+     * @param limit the maximum number of giveaways to return
+     * @return the giveaways ending in the range
+     */
+    public List<Giveaway> getEndingBetween(long start, long end, int limit)
+    {
+        return getEndingBetween(start, end, limit, Collections.emptySet());
+    }
+    
+    /**
+     * Gets giveaways by end time, oldest first, leaving out the given ids; 
+     * skipped giveaways don't count towards the limit.
+     *
+     * @param start the earliest end time, inclusive, in epoch seconds
+     * @param end the latest end time, exclusive, in epoch seconds
+     * @param limit the maximum number of giveaways to return
+     * @param skip message ids to leave out
+     * @return the giveaways ending in the range
+     */
+    public List<Giveaway> getEndingBetween(long start, long end, int limit, Set<Long> skip)
+    {
+        List<Giveaway> list = new ArrayList<>();
+        if(start >= end)
+            return list;
+        for(Giveaway g: byEndTime.subSet(bound(start, Long.MIN_VALUE), bound(end, Long.MIN_VALUE)))
+        {
+            if(list.size() >= limit)
+                break;
+            if(!skip.contains(g.getMessageId()))
+                list.add(g);
+        }
+        return list;
+    }
+    
+    public int countEndingBefore(long end)
+    {
+        return byEndTime.headSet(bound(end, Long.MIN_VALUE)).size();
+    }
+    
+    // a placeholder for searching by end time and message id
+    private static Giveaway bound(long endTime, long messageId)
+    {
+        Giveaway g = new Giveaway();
+        g.setEndTime(endTime);
+        g.setMessageId(messageId);
+        return g;
+    }
+    
+    private static <T> void replace(Map<Long,List<T>> index, long key, List<T> list)
+    {
+        if(list.isEmpty())
+            index.remove(key);
+        else
+            index.put(key, list);
+    }
+    
+    private static List<Giveaway> withSorted(List<Giveaway> list, Giveaway giveaway)
+    {
+        List<Giveaway> copy = list == null ? new ArrayList<>(1) : new ArrayList<>(list.size() + 1);
+        if(list != null)
+            copy.addAll(list);
+        int i = Collections.binarySearch(copy, giveaway, END_ORDER);
+        copy.add(i >= 0 ? i : -(i + 1), giveaway);
+        return Collections.unmodifiableList(copy);
+    }
+    
+    private static <T> List<T> with(List<T> list, T item)
+    {
+        List<T> copy = list == null ? new ArrayList<>(1) : new ArrayList<>(list);
+        copy.add(item);
+        return Collections.unmodifiableList(copy);
+    }
+    
+    private static List<Giveaway> without(List<Giveaway> list, long id)
+    {
+        List<Giveaway> copy = new ArrayList<>(list);
+        copy.removeIf(g -> g.getMessageId() == id);
+        return Collections.unmodifiableList(copy);
+    }
+    
+    private static class Suggestion
+    {
+        private final Giveaway giveaway;
+        private final String id, prize;
+        
+        private Suggestion(Giveaway giveaway)
+        {
+            this.giveaway = giveaway;
+            this.id = Long.toString(giveaway.getMessageId());
+            this.prize = giveaway.getPrize() == null ? "" : giveaway.getPrize().toLowerCase(Locale.ROOT);
+        }
+        
+        // 0 = prize prefix, 1 = id prefix, 2 = substring, -1 = no match
+        private int rank(String query)
+        {
+            if(prize.startsWith(query))
+                return 0;
+            if(id.startsWith(query))
+                return 1;
+            if(prize.contains(query) || id.contains(query))
+                return 2;
+            return -1;
+        }
+    }
+}
@@ -23,13 +23,17 @@ import com.jagrosh.interactions.entities.WebLocale;
 import java.awt.Color;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -37,29 +41,50 @@ import javax.persistence.Persistence;
  */
 public class Database
 {
+    private final static int FINGERPRINT_SLOTS = 1 << 20,
+                             MAX_USER_BATCH = 1000;
+    private final Logger log = LoggerFactory.getLogger(Database.class);
     private final EntityManagerFactory emf;
     private final EntityManager em;
     private final Map<Long, GiveawayEntries> cachedEntries = new HashMap<>();
-    private final Map<Long, Giveaway> cachedGiveawaysReadonly = new HashMap<>();
+    private final ActiveGiveaways active = new ActiveGiveaways();
+    private final GiveawayReservations reservations = new GiveawayReservations(active);
+    private final Map<Long, User> pendingUsers = new ConcurrentHashMap<>();
+    private final AtomicLongArray userFingerprints = new AtomicLongArray(FINGERPRINT_SLOTS);
+    private final PremiumIndex premium = new PremiumIndex();
     private final ScheduledExecutorService cacheCombiner = Executors.newSingleThreadScheduledExecutor();
     
     public Database(String host, String user, String pass)
     {
-        Map<String, String> properties = new HashMap<>();
-        properties.put("javax.persistence.jdbc.user", user);
-        properties.put("javax.persistence.jdbc.password", pass);
-        emf = Persistence.createEntityManagerFactory(host, properties);
+        this(Persistence.createEntityManagerFactory(host, credentials(user, pass)));
+    }
+    
+    public Database(EntityManagerFactory emf)
+    {
+        this.emf = emf;
         em = emf.createEntityManager();
         em.getMetamodel().managedType(CachedUser.class);
         em.getMetamodel().managedType(Giveaway.class);
         em.getMetamodel().managedType(GiveawayEntries.class);
         em.getMetamodel().managedType(GuildSettings.class);
+        getAllPremiumUsers().forEach(u -> premium.setLevel(u.getId(), u.getPremiumLevel()));
+        active.load(em.createNamedQuery("Giveaway.getAll", Giveaway.class).getResultList());
         cacheCombiner.scheduleWithFixedDelay(() -> syncEntries(), 60, 60, TimeUnit.SECONDS);
+        cacheCombiner.scheduleWithFixedDelay(() -> syncUsers(), 5, 5, TimeUnit.SECONDS);
+    }
+    
+    private static Map<String, String> credentials(String user, String pass)
+    {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.user", user);
+        properties.put("javax.persistence.jdbc.password", pass);
+        return properties;
     }
     
     public void shutdown()
     {
         cacheCombiner.shutdown();
+        syncUsers();
         syncEntries();
         em.close();
         emf.close();
@@ -87,6 +112,7 @@ public class Database
         if(guild != null)
         {
             gs.setOwnerId(guild.getOwnerId());
+            premium.setOwner(guildId, guild.getOwnerId());
             if(guild.getPreferredLocale() != null && guild.getPreferredLocale() != WebLocale.UNKNOWN)
                 gs.setLocale(guild.getPreferredLocale());
             /*if(gs.getLocale() == null || gs.getLocale() == WebLocale.UNKNOWN)
@@ -136,100 +162,213 @@ public class Database
     // giveaways
     public Giveaway getGiveaway(long id)
     {
-        if(cachedGiveawaysReadonly.containsKey(id))
-            return cachedGiveawaysReadonly.get(id);
-        Giveaway g = em.find(Giveaway.class, id);
-        cachedGiveawaysReadonly.put(id, g);
-        return g;
-        //return em.find(Giveaway.class, id);
+        return active.get(id);
     }
     
     public List<Giveaway> getGiveawaysByGuild(long guildId)
     {
-        return em.createNamedQuery("Giveaway.getAllFromGuild", Giveaway.class).setParameter("guildId", guildId).getResultList();
+        return active.getByGuild(guildId);
     }
     
     public List<Giveaway> getGiveawaysByChannel(long channelId)
     {
-        return em.createNamedQuery("Giveaway.getAllFromChannel", Giveaway.class).setParameter("channelId", channelId).getResultList();
+        return active.getByChannel(channelId);
+    }
+    
+    public GiveawayPage getGiveawayPageByGuild(long guildId, long endTime, long messageId, boolean forward, int size)
+    {
+        return active.getPageByGuild(guildId, endTime, messageId, forward, size);
+    }
+    
+    public List<Giveaway> searchGiveawaysByChannel(long channelId, String query, int limit)
+    {
+        return active.search(channelId, query, limit);
     }
     
     public long countGiveawaysByChannel(long channelId)
     {
-        return em.createNamedQuery("Giveaway.countAllFromChannel", Long.class).setParameter("channelId", channelId).getSingleResult();
+        return active.getByChannel(channelId).size();
     }
     
     public long countGiveawaysByGuild(long guildId)
     {
-        return em.createNamedQuery("Giveaway.countAllFromGuild", Long.class).setParameter("guildId", guildId).getSingleResult();
+        return active.getByGuild(guildId).size();
     }
     
     public long countAllGiveaways()
     {
-        return em.createNamedQuery("Giveaway.countAll", Long.class).getSingleResult();
+        return active.size();
     }
     
     public List<Giveaway> getGiveawaysEndingBefore(Instant time)
     {
-        return em.createNamedQuery("Giveaway.getAllEndingBefore", Giveaway.class).setParameter("endTime", time.getEpochSecond()).getResultList();
+        return active.getEndingBetween(Long.MIN_VALUE, time.getEpochSecond(), Integer.MAX_VALUE);
+    }
+    
+    public List<Giveaway> getGiveawaysEndingBetween(Instant start, Instant end)
+    {
+        return active.getEndingBetween(start.getEpochSecond(), end.getEpochSecond(), Integer.MAX_VALUE);
+    }
+    
+    public List<Giveaway> getOldestGiveawaysEndingBefore(Instant time, int limit, Set<Long> skip)
+    {
+        return active.getEndingBetween(Long.MIN_VALUE, time.getEpochSecond(), limit, skip);
+    }
+    
+    public long countGiveawaysEndingBefore(Instant time)
+    {
+        return active.countEndingBefore(time.getEpochSecond());
+    }
+    
+    public boolean reserveGiveaway(long guildId, long channelId, PremiumLevel level)
+    {
+        return reservations.reserve(guildId, channelId, level.perChannelMaxGiveaways, level.maxGiveaways);
     }
     
-    public synchronized void createGiveaway(Giveaway giveaway)
+    public void cancelReservation(long guildId, long channelId)
+    {
+        reservations.release(guildId, channelId);
+    }
+    
+    public synchronized void createGiveaway(Giveaway giveaway, boolean reserved)
     {
         em.getTransaction().begin();
         em.persist(giveaway);
         em.getTransaction().commit();
+        if(reserved)
+            reservations.commit(giveaway);
+        else
+            active.add(giveaway);
     }
     
     public synchronized void removeGiveaway(long id)
     {
-        cachedGiveawaysReadonly.remove(id);
-        Giveaway g = em.find(Giveaway.class, id);
-        if(g != null)
+        removeGiveaways(Collections.singletonList(id));
+    }
+    
+    public synchronized int removeGiveawaysByChannel(long channelId)
+    {
+        return removeGiveaways(getGiveawaysByChannel(channelId).stream().map(Giveaway::getMessageId).collect(Collectors.toList()));
+    }
+    
+    public synchronized int removeGiveawaysByGuild(long guildId)
+    {
+        return removeGiveaways(getGiveawaysByGuild(guildId).stream().map(Giveaway::getMessageId).collect(Collectors.toList()));
+    }
+    
+    private int removeGiveaways(List<Long> giveaways)
+    {
+        if(giveaways.isEmpty())
+            return 0;
+        try
         {
+            // remove the giveaways and their entries together
             em.getTransaction().begin();
-            em.remove(g);
+            for(long id: giveaways)
+            {
+                GiveawayEntries ge = em.find(GiveawayEntries.class, id);
+                if(ge != null)
+                    em.remove(ge);
+                Giveaway managed = em.find(Giveaway.class, id);
+                if(managed != null)
+                    em.remove(managed);
+            }
             em.getTransaction().commit();
         }
-        GiveawayEntries ge = em.find(GiveawayEntries.class, id);
-        if(ge != null)
+        catch(Exception ex)
         {
-            em.getTransaction().begin();
-            em.remove(ge);
-            em.getTransaction().commit();
+            if(em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            log.error(String.format("Failed to remove %d giveaways: ", giveaways.size()), ex);
+            return 0;
+        }
+        // the view only changes once the rows are really gone
+        for(long id: giveaways)
+        {
+            active.remove(id);
+            cachedEntries.remove(id);
         }
+        return giveaways.size();
     }
     
     
     // entries
-    public synchronized void updateUser(User user)
+    public void updateUser(User user)
     {
-        // update cached user
-        CachedUser u = em.find(CachedUser.class, user.getIdLong());
-        
-        // short circuit if data is up to date
-        if(u != null
-            && OtherUtil.strEquals(user.getUsername(), u.getUsername()) 
-            && OtherUtil.strEquals(user.getDiscriminator(), u.getDiscriminator()) 
-            && OtherUtil.strEquals(user.getAvatar(), u.getAvatar()))
+        // short circuit if we've recently seen this exact profile
+        long fingerprint = fingerprint(user);
+        int slot = (int) (user.getIdLong() ^ (user.getIdLong() >>> 22)) & (FINGERPRINT_SLOTS - 1);
+        if(userFingerprints.get(slot) == fingerprint)
             return;
         
-        em.getTransaction().begin();
-        if(u == null)
+        // otherwise, queue it to be written with the next batch
+        userFingerprints.set(slot, fingerprint);
+        pendingUsers.put(user.getIdLong(), user);
+    }
+    
+    public synchronized void syncUsers()
+    {
+        List<User> batch = new ArrayList<>();
+        while(!pendingUsers.isEmpty()) try
         {
-            u = new CachedUser();
-            u.setId(user.getIdLong());
-            em.persist(u);
+            batch.clear();
+            em.getTransaction().begin();
+            Iterator<Long> it = pendingUsers.keySet().iterator();
+            for(int i = 0; i < MAX_USER_BATCH && it.hasNext(); i++)
+            {
+                User user = pendingUsers.remove(it.next());
+                if(user == null)
+                    continue;
+                batch.add(user);
+                CachedUser u = em.find(CachedUser.class, user.getIdLong());
+                
+                // skip the write if the stored data is already up to date
+                if(u != null
+                    && OtherUtil.strEquals(user.getUsername(), u.getUsername()) 
+                    && OtherUtil.strEquals(user.getDiscriminator(), u.getDiscriminator()) 
+                    && OtherUtil.strEquals(user.getAvatar(), u.getAvatar()))
+                    continue;
+                
+                if(u == null)
+                {
+                    u = new CachedUser();
+                    u.setId(user.getIdLong());
+                    em.persist(u);
+                }
+                u.setUsername(user.getUsername());
+                u.setDiscriminator(user.getDiscriminator());
+                u.setAvatar(user.getAvatar());
+            }
+            em.getTransaction().commit();
+        }
+        catch(Exception ex)
+        {
+            if(em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            
+            // put the batch back for the next sync, unless there's already a newer profile queued
+            batch.forEach(u -> pendingUsers.putIfAbsent(u.getIdLong(), u));
+            log.error(String.format("Failed to write %d cached users: ", batch.size()), ex);
+            return;
         }
-        u.setUsername(user.getUsername());
-        u.setDiscriminator(user.getDiscriminator());
-        u.setAvatar(user.getAvatar());
-        em.getTransaction().commit();
     }
     
     public CachedUser getUser(long userId)
     {
-        return em.find(CachedUser.class, userId);
+        CachedUser u = em.find(CachedUser.class, userId);
+        User pending = pendingUsers.get(userId);
+        if(pending == null)
+            return u;
+        
+        // profile changes that haven't been written yet take precedence
+        CachedUser cu = new CachedUser();
+        cu.setId(userId);
+        cu.setUsername(pending.getUsername());
+        cu.setDiscriminator(pending.getDiscriminator());
+        cu.setAvatar(pending.getAvatar());
+        if(u != null)
+            cu.setPremiumLevel(u.getPremiumLevel());
+        return cu;
     }
     
     public synchronized int addEntry(long giveawayId, User user)
@@ -290,10 +429,19 @@ public class Database
         if(ge == null)
             return Collections.emptyList();
         return ge.getUsers().stream()
-                .map(u -> em.find(CachedUser.class, u))
+                .map(u -> getUser(u))
                 .collect(Collectors.toList());
     }
     
+    private static long fingerprint(User user)
+    {
+        long h = user.getIdLong() * 0x9E3779B97F4A7C15L;
+        h = (h ^ Objects.hashCode(user.getUsername())) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ Objects.hashCode(user.getDiscriminator())) * 0x94D049BB133111EBL;
+        h = (h ^ Objects.hashCode(user.getAvatar())) * 0x9E3779B97F4A7C15L;
+        return h == 0L ? 1L : h;
+    }
+    
     private GiveawayEntries getEntries(long giveawayId)
     {
         return cachedEntries.containsKey(giveawayId) ? cachedEntries.get(giveawayId) : em.find(GiveawayEntries.class, giveawayId);
@@ -309,47 +457,48 @@ public class Database
     public PremiumLevel getPremiumLevel(long guildId, long userId)
     {
         // get premium level of user
-        CachedUser user = em.find(CachedUser.class, userId);
-        PremiumLevel userPremium = user == null ? PremiumLevel.NONE : user.getPremiumLevel();
+        PremiumLevel userPremium = premium.getLevel(userId);
         
-        // get premium level of guild
-        GuildSettings guild = em.find(GuildSettings.class, guildId);
-        long ownerId = guild == null ? 0L : guild.getOwnerId();
-        CachedUser owner = em.find(CachedUser.class, ownerId);
-        PremiumLevel guildPremium = owner == null ? PremiumLevel.NONE : owner.getPremiumLevel();
+        // get premium level of guild, only looking up the owner the first time
+        long ownerId = premium.getOwner(guildId);
+        if(ownerId == PremiumIndex.UNKNOWN)
+        {
+            GuildSettings guild = em.find(GuildSettings.class, guildId);
+            ownerId = guild == null ? 0L : guild.getOwnerId();
+            premium.setOwnerIfAbsent(guildId, ownerId);
+        }
+        PremiumLevel guildPremium = premium.getLevel(ownerId);
                 
         return userPremium.level > guildPremium.level ? userPremium : guildPremium;
     }
     
-    public synchronized void updatePremiumLevel(long userId, String username, String discrim, String avatar, PremiumLevel premium)
+    public PremiumLevel getUserPremiumLevel(long userId)
     {
-        CachedUser u = em.find(CachedUser.class, userId);
-        em.getTransaction().begin();
-        if(u == null)
-        {
-            u = new CachedUser();
-            u.setId(userId);
-            em.persist(u);
-        }
-        u.setUsername(username);
-        u.setDiscriminator(discrim);
-        u.setAvatar(avatar);
-        u.setPremiumLevel(premium);
-        em.getTransaction().commit();
+        return premium.getLevel(userId);
     }
     
-    public synchronized void removePremium(long userId)
+    public synchronized void updatePremiumLevels(Collection<CachedUser> users)
     {
-        CachedUser u = em.find(CachedUser.class, userId);
         em.getTransaction().begin();
-        if(u == null)
+        for(CachedUser user: users)
         {
-            u = new CachedUser();
-            u.setId(userId);
-            em.persist(u);
+            CachedUser u = em.find(CachedUser.class, user.getId());
+            if(u == null)
+            {
+                u = new CachedUser();
+                u.setId(user.getId());
+                em.persist(u);
+            }
+            if(user.getUsername() != null)
+            {
+                u.setUsername(user.getUsername());
+                u.setDiscriminator(user.getDiscriminator());
+                u.setAvatar(user.getAvatar());
+            }
+            u.setPremiumLevel(user.getPremiumLevel());
         }
-        u.setPremiumLevel(PremiumLevel.NONE);
         em.getTransaction().commit();
+        users.forEach(u -> premium.setLevel(u.getId(), u.getPremiumLevel()));
     }
     
     public List<CachedUser> getAllPremiumUsers()
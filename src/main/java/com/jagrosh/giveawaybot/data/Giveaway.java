@@ -25,12 +25,7 @@ import javax.persistence.*;
 @Entity
 @Table(name = "GIVEAWAYS")
 @NamedQueries({
-    @NamedQuery(name = "Giveaway.countAll", query = "SELECT COUNT(g) FROM Giveaway g"),
-    @NamedQuery(name = "Giveaway.countAllFromChannel", query = "SELECT COUNT(g) FROM Giveaway g WHERE g.channelId = :channelId"),
-    @NamedQuery(name = "Giveaway.countAllFromGuild", query = "SELECT COUNT(g) FROM Giveaway g WHERE g.guildId = :guildId"),
-    @NamedQuery(name = "Giveaway.getAllFromChannel", query = "SELECT g FROM Giveaway g WHERE g.channelId = :channelId"),
-    @NamedQuery(name = "Giveaway.getAllFromGuild", query = "SELECT g FROM Giveaway g WHERE g.guildId = :guildId"),
-    @NamedQuery(name = "Giveaway.getAllEndingBefore", query = "SELECT g FROM Giveaway g WHERE g.endTime < :endTime")
+    @NamedQuery(name = "Giveaway.getAll", query = "SELECT g FROM Giveaway g")
 })
 public class Giveaway
 {
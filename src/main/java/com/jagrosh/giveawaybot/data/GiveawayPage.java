@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.data;
+
+import java.util.List;
+
+/**
+ * One page of a guild's active giveaways, in end time order.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class GiveawayPage
+{
+    private final List<Giveaway> giveaways;
+    private final int offset, total;
+    
+    public GiveawayPage(List<Giveaway> giveaways, int offset, int total)
+    {
+        this.giveaways = giveaways;
+        this.offset = offset;
+        this.total = total;
+    }
+    
+    public List<Giveaway> getGiveaways()
+    {
+        return giveaways;
+    }
+    
+    public int getOffset()
+    {
+        return offset;
+    }
+    
+    public int getTotal()
+    {
+        return total;
+    }
+    
+    public boolean hasPrevious()
+    {
+        return offset > 0;
+    }
+    
+    public boolean hasNext()
+    {
+        return offset + giveaways.size() < total;
+    }
+}
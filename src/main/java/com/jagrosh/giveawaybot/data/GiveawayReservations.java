@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Slots reserved for giveaways that are being created. A slot is reserved
+ * before the message is sent, so that concurrent creations can't go over the
+ * limit, and is then either committed along with the new giveaway, or
+ * released.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+class GiveawayReservations
+{
+    private final Map<Long,Integer> byGuild = new HashMap<>(), 
+                                    byChannel = new HashMap<>();
+    private final ActiveGiveaways active;
+    
+    GiveawayReservations(ActiveGiveaways active)
+    {
+        this.active = active;
+    }
+    
+    /**
+     * Reserves a slot for a new giveaway, if the guild (or channel) has fewer
+     * than the maximum number of active and reserved giveaways.
+     *
+     * @param guildId the guild id
+     * @param channelId the channel id
+     * @param perChannel true if the limit applies per channel
+     * @param max the maximum number of giveaways
+     * @return true if the slot was reserved
+     */
+    public synchronized boolean reserve(long guildId, long channelId, boolean perChannel, int max)
+    {
+        int count = perChannel 
+                ? active.getByChannel(channelId).size() + byChannel.getOrDefault(channelId, 0)
+                : active.getByGuild(guildId).size() + byGuild.getOrDefault(guildId, 0);
+        if(count >= max)
+            return false;
+        byGuild.merge(guildId, 1, Integer::sum);
+        byChannel.merge(channelId, 1, Integer::sum);
+        return true;
+    }
+    
+    public synchronized void release(long guildId, long channelId)
+    {
+        decrement(byGuild, guildId);
+        decrement(byChannel, channelId);
+    }
+    
+    public synchronized void commit(Giveaway giveaway)
+    {
+        release(giveaway.getGuildId(), giveaway.getChannelId());
+        active.add(giveaway);
+    }
+    
+    private static void decrement(Map<Long,Integer> reserved, long key)
+    {
+        reserved.computeIfPresent(key, (k, v) -> v <= 1 ? null : v - 1);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.data;
+
+import com.jagrosh.giveawaybot.entities.PremiumLevel;
+import com.jagrosh.giveawaybot.util.LongLongMap;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory index used to resolve premium levels without touching the
+ * database. Premium users are few and change rarely, so they are kept in a
+ * sorted array that is replaced on every change; guild owners are kept in a
+ * primitive hash map.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+class PremiumIndex
+{
+    public final static long UNKNOWN = -1L;
+
+    private final StampedLock ownerLock = new StampedLock();
+    private final LongLongMap owners = new LongLongMap(1 << 16);
+    private volatile Levels levels = new Levels(new long[0], new byte[0]);
+
+    public PremiumLevel getLevel(long userId)
+    {
+        Levels lv = levels;
+        int i = Arrays.binarySearch(lv.ids, userId);
+        return i < 0 ? PremiumLevel.NONE : PremiumLevel.get(lv.levels[i]);
+    }
+
+    public synchronized void setLevel(long userId, PremiumLevel level)
+    {
+        Levels lv = levels;
+        int i = Arrays.binarySearch(lv.ids, userId);
+        if(i >= 0 && level == PremiumLevel.NONE)
+        {
+            // remove the user
+            long[] ids = new long[lv.ids.length - 1];
+            byte[] lvs = new byte[ids.length];
+            System.arraycopy(lv.ids, 0, ids, 0, i);
+            System.arraycopy(lv.ids, i + 1, ids, i, ids.length - i);
+            System.arraycopy(lv.levels, 0, lvs, 0, i);
+            System.arraycopy(lv.levels, i + 1, lvs, i, lvs.length - i);
+            levels = new Levels(ids, lvs);
+        }
+        else if(i >= 0)
+        {
+            // change the user's level
+            byte[] lvs = lv.levels.clone();
+            lvs[i] = (byte) level.level;
+            levels = new Levels(lv.ids, lvs);
+        }
+        else if(level != PremiumLevel.NONE)
+        {
+            // insert the user
+            int pos = -i - 1;
+            long[] ids = new long[lv.ids.length + 1];
+            byte[] lvs = new byte[ids.length];
+            System.arraycopy(lv.ids, 0, ids, 0, pos);
+            System.arraycopy(lv.ids, pos, ids, pos + 1, lv.ids.length - pos);
+            System.arraycopy(lv.levels, 0, lvs, 0, pos);
+            System.arraycopy(lv.levels, pos, lvs, pos + 1, lv.levels.length - pos);
+            ids[pos] = userId;
+            lvs[pos] = (byte) level.level;
+            levels = new Levels(ids, lvs);
+        }
+    }
+
+    public int getPremiumCount()
+    {
+        return levels.ids.length;
+    }
+
+    public long getOwner(long guildId)
+    {
+        long stamp = ownerLock.readLock();
+        try
+        {
+            return owners.get(guildId, UNKNOWN);
+        }
+        finally
+        {
+            ownerLock.unlockRead(stamp);
+        }
+    }
+
+    public void setOwner(long guildId, long ownerId)
+    {
+        setOwner(guildId, ownerId, true);
+    }
+
+    public void setOwnerIfAbsent(long guildId, long ownerId)
+    {
+        setOwner(guildId, ownerId, false);
+    }
+
+    private void setOwner(long guildId, long ownerId, boolean overwrite)
+    {
+        if(guildId == 0L)
+            return;
+        long stamp = ownerLock.writeLock();
+        try
+        {
+            if(overwrite || owners.get(guildId, UNKNOWN) == UNKNOWN)
+                owners.put(guildId, ownerId);
+        }
+        finally
+        {
+            ownerLock.unlockWrite(stamp);
+        }
+    }
+
+    private static class Levels
+    {
+        private final long[] ids;
+        private final byte[] levels;
+
+        private Levels(long[] ids, byte[] levels)
+        {
+            this.ids = ids;
+            this.levels = levels;
+        }
+    }
+}
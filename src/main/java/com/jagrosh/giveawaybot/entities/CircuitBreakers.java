@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of circuit breakers, keyed by strings such as "channel:1234". A
+ * breaker opens after several failures in a row, after which calls for its
+ * key are refused without doing any work. Once the open time has passed, a
+ * single call is let through as a probe; if it succeeds the breaker closes,
+ * and if it fails the breaker opens again for twice as long.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class CircuitBreakers
+{
+    private final static int FAILURE_THRESHOLD = 3;
+    private final static long BASE_OPEN_TIME = 60 * 1000L,
+                              MAX_OPEN_TIME = 6 * 60 * 60 * 1000L,
+                              PROBE_TIMEOUT = 30 * 1000L;
+    
+    private final ConcurrentHashMap<String,Breaker> breakers = new ConcurrentHashMap<>();
+    
+    /**
+     * Checks if a call may go ahead. If the breaker is ready to be probed,
+     * this lets exactly one caller through and records that a probe started.
+     *
+     * @param key the breaker key
+     * @return true if the call may be made
+     */
+    public boolean allow(String key)
+    {
+        Breaker b = breakers.get(key);
+        return b == null || b.allow(System.currentTimeMillis());
+    }
+    
+    /**
+     * Checks if a breaker is open, without starting a probe.
+     *
+     * @param key the breaker key
+     * @return true if calls for the key are currently refused
+     */
+    public boolean isOpen(String key)
+    {
+        Breaker b = breakers.get(key);
+        return b != null && b.isOpen(System.currentTimeMillis());
+    }
+    
+    public void success(String key)
+    {
+        // closed breakers are simply forgotten
+        breakers.remove(key);
+    }
+    
+    public void failure(String key)
+    {
+        breakers.computeIfAbsent(key, k -> new Breaker()).failure(System.currentTimeMillis());
+    }
+    
+    public int getOpenCount()
+    {
+        long now = System.currentTimeMillis();
+        return (int) breakers.values().stream().filter(b -> b.isOpen(now)).count();
+    }
+    
+    public void clean()
+    {
+        // remove breakers that haven't failed in a while
+        long now = System.currentTimeMillis();
+        breakers.values().removeIf(b -> b.isStale(now));
+    }
+    
+    private static class Breaker
+    {
+        private int failures = 0;
+        private long openTime = 0L, openUntil = 0L, probeStarted = 0L, lastFailure = 0L;
+        
+        private synchronized boolean allow(long now)
+        {
+            if(openUntil == 0L || now >= openUntil && now - probeStarted >= PROBE_TIMEOUT)
+            {
+                if(openUntil != 0L)
+                    probeStarted = now;
+                return true;
+            }
+            return false;
+        }
+        
+        private synchronized boolean isOpen(long now)
+        {
+            return openUntil != 0L && (now < openUntil || now - probeStarted < PROBE_TIMEOUT);
+        }
+        
+        private synchronized void failure(long now)
+        {
+            lastFailure = now;
+            if(openUntil != 0L)
+            {
+                // a probe failed, so stay open for longer
+                openTime = Math.min(MAX_OPEN_TIME, openTime * 2);
+                openUntil = now + openTime;
+                probeStarted = 0L;
+            }
+            else if(++failures >= FAILURE_THRESHOLD)
+            {
+                openTime = BASE_OPEN_TIME;
+                openUntil = now + openTime;
+            }
+        }
+        
+        private synchronized boolean isStale(long now)
+        {
+            return openUntil == 0L ? now - lastFailure > BASE_OPEN_TIME : now - lastFailure > 2 * MAX_OPEN_TIME;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A fixed point in time that a unit of work must finish by. Blocking calls
+ * should wait on futures through {@link #await(Future)} so that they never
+ * outlive the work they belong to.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class Deadline
+{
+    private final long expiry;
+
+    private Deadline(long expiry)
+    {
+        this.expiry = expiry;
+    }
+
+    public static Deadline after(long millis)
+    {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public long remaining()
+    {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(expiry - System.nanoTime()));
+    }
+
+    public boolean isExpired()
+    {
+        return expiry - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Waits for a future until the deadline, and tries to cancel it if the
+     * deadline passes. Work that can no longer be cancelled (such as a request
+     * that has already been sent) keeps going, so the caller may still need to
+     * deal with its result.
+     *
+     * @param future the future to wait on
+     * @return the result of the future
+     */
+    public <T> T await(Future<T> future) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        try
+        {
+            return future.get(remaining(), TimeUnit.MILLISECONDS);
+        }
+        catch(TimeoutException ex)
+        {
+            future.cancel(false);
+            throw ex;
+        }
+    }
+}
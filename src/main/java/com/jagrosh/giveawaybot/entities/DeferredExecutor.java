@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.Constants;
+import com.jagrosh.interactions.entities.SentMessage;
+import com.jagrosh.interactions.receive.Interaction;
+import com.jagrosh.interactions.requests.RestClient;
+import com.jagrosh.interactions.requests.Route;
+import com.jagrosh.interactions.responses.DeferredCallback;
+import com.jagrosh.interactions.responses.InteractionResponse;
+import com.jagrosh.interactions.responses.MessageCallback;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs interaction handlers against a deadline. Discord only waits 3 seconds
+ * for an initial response, so any handler that is expected to take (or ends
+ * up taking) longer than the response budget is answered with a deferral, and
+ * its real result is delivered afterwards by editing the original response.
+ * A deferral fixes whether the response is ephemeral, so a result with the
+ * other visibility is sent as a follow-up message instead.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class DeferredExecutor
+{
+    private final static String FOLLOWUP = "https://discord.com/api/v10/webhooks/%d/%s",
+                                ORIGINAL_RESPONSE = FOLLOWUP + "/messages/@original";
+    private final static long RESPONSE_BUDGET = 2000L, // ms until we must answer
+                              WORK_BUDGET = 30000L;    // ms for the whole task, including follow-up
+    private final static int CORE_THREADS = 8,
+                             MAX_THREADS = 64,
+                             EPHEMERAL_FLAG = 1 << 6;
+    private final static double SMOOTHING = 0.2;
+
+    private final Logger log = LoggerFactory.getLogger(DeferredExecutor.class);
+    private final ExecutorService pool = new ThreadPoolExecutor(CORE_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    private final Map<String,Long> averageTimes = new ConcurrentHashMap<>();
+    private final RestClient rest;
+    private final long appId;
+
+    public DeferredExecutor(RestClient rest, long appId)
+    {
+        this.rest = rest;
+        this.appId = appId;
+    }
+
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    public InteractionResponse execute(String name, Interaction interaction, boolean ephemeral, Function<Deadline, InteractionResponse> task)
+    {
+        long start = System.nanoTime();
+        Deadline deadline = Deadline.after(WORK_BUDGET);
+        CompletableFuture<InteractionResponse> future;
+        try
+        {
+            future = CompletableFuture.supplyAsync(() -> task.apply(deadline), pool);
+        }
+        catch(RejectedExecutionException ex)
+        {
+            // every worker is busy, so answer right away rather than queueing behind them
+            log.warn(String.format("Rejected %s, all %d workers are busy", name, MAX_THREADS));
+            return new MessageCallback(errorMessage(interaction).setEphemeral(true).build());
+        }
+        future.whenComplete((res, ex) -> record(name, System.nanoTime() - start));
+
+        // skip waiting entirely if this task has recently been too slow to answer in time
+        if(averageTimes.getOrDefault(name, 0L) < TimeUnit.MILLISECONDS.toNanos(RESPONSE_BUDGET))
+        {
+            try
+            {
+                long remaining = RESPONSE_BUDGET - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                return future.get(Math.max(0L, remaining), TimeUnit.MILLISECONDS);
+            }
+            catch(TimeoutException ignore) {}
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException ex)
+            {
+                throw new CompletionException(ex.getCause());
+            }
+        }
+
+        // the task is still running, so defer and deliver the result when it's ready
+        log.debug(String.format("Deferring response to %s after %dms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        future.whenComplete((res, ex) -> sendFollowup(interaction, ephemeral, res, ex));
+        return new DeferredCallback(ephemeral);
+    }
+
+    public long getAverageTime(String name)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(averageTimes.getOrDefault(name, 0L));
+    }
+
+    private void record(String name, long time)
+    {
+        averageTimes.merge(name, time, (old, val) -> (long) (old * (1 - SMOOTHING) + val * SMOOTHING));
+    }
+
+    private void sendFollowup(Interaction interaction, boolean ephemeral, InteractionResponse res, Throwable ex)
+    {
+        JSONObject data;
+        if(ex == null && res != null && res.toJson().has("data"))
+            data = res.toJson().getJSONObject("data");
+        else
+        {
+            if(ex != null)
+                log.error("Exception in deferred interaction: ", ex);
+            data = errorMessage(interaction).setEphemeral(ephemeral).build().toJson();
+        }
+        String original = String.format(ORIGINAL_RESPONSE, appId, interaction.getToken());
+        if(((data.optInt("flags", 0) & EPHEMERAL_FLAG) != 0) == ephemeral)
+        {
+            rest.simpleRequest(original, Route.Type.PATCH, data.toString());
+            return;
+        }
+        // editing can't change who sees the deferred response, so replace it
+        rest.simpleRequest(String.format(FOLLOWUP, appId, interaction.getToken()), Route.Type.POST, data.toString());
+        rest.simpleRequest(original, Route.Type.DELETE, "");
+    }
+    
+    private static SentMessage.Builder errorMessage(Interaction interaction)
+    {
+        return new SentMessage.Builder()
+                .setContent(Constants.ERROR + " " + LocalizedMessage.ERROR_GENERIC.getLocalizedMessage(interaction.getEffectiveLocale()));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.interactions.responses.DeferredCallback;
+import com.jagrosh.interactions.responses.InteractionResponse;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses to recent interactions, so that a retried delivery 
+ * gets the same response instead of doing the work again.
+ * A duplicate that arrives while the first copy is still being handled waits
+ * for its result.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class DuplicateFilter
+{
+    public final static long INTERACTION_WINDOW = 60 * 1000L; // retried deliveries
+    private final static long WAIT_TIMEOUT = 2500L;
+    private final static int MAX_ENTRIES = 20000;
+    
+    private final LinkedHashMap<String,Recent> entries = new LinkedHashMap<String,Recent>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,Recent> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long handled = 0L, duplicates = 0L;
+    
+    /**
+     * Runs the task, unless the same key was seen within its window, in which
+     * case the earlier response is returned.
+     *
+     * @param key the key, such as the interaction token
+     * @param window how long to remember the response, in milliseconds
+     * @param task the task that produces the response
+     * @return the response
+     */
+    public InteractionResponse execute(String key, long window, Supplier<InteractionResponse> task)
+    {
+        long now = System.currentTimeMillis();
+        Recent entry = null, existing;
+        synchronized(this)
+        {
+            removeExpired(now);
+            existing = entries.get(key);
+            if(existing != null && existing.expires < now)
+                existing = null;
+            if(existing == null)
+            {
+                entry = new Recent(now + window);
+                entries.put(key, entry);
+                handled++;
+            }
+            else
+                duplicates++;
+        }
+        
+        if(existing != null)
+        {
+            try
+            {
+                return existing.response.get(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            catch(TimeoutException ex)
+            {
+                return new DeferredCallback(true);
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return new DeferredCallback(true);
+            }
+            catch(ExecutionException ex)
+            {
+                // the first attempt failed, so this one gets to try for itself
+                return task.get();
+            }
+        }
+        
+        try
+        {
+            InteractionResponse response = task.get();
+            entry.response.complete(response);
+            return response;
+        }
+        catch(RuntimeException ex)
+        {
+            synchronized(this)
+            {
+                entries.remove(key, entry);
+            }
+            entry.response.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+    
+    public synchronized Map<String,Long> getMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        map.put("Entries", (long) entries.size());
+        map.put("Handled", handled);
+        map.put("Duplicates", duplicates);
+        return map;
+    }
+    
+    // entries are roughly in expiration order, so stop at the first live one
+    private void removeExpired(long now)
+    {
+        Iterator<Recent> it = entries.values().iterator();
+        while(it.hasNext() && it.next().expires < now)
+            it.remove();
+    }
+    
+    private static class Recent
+    {
+        private final CompletableFuture<InteractionResponse> response = new CompletableFuture<>();
+        private final long expires;
+        
+        private Recent(long expires)
+        {
+            this.expires = expires;
+        }
+    }
+}
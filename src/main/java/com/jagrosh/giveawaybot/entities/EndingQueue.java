@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.data.Giveaway;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Queue of giveaways waiting to be ended. Giveaways that are ending on time
+ * always go before the backlog of overdue ones. Within each lane, guilds
+ * take turns (deficit round-robin), and a guild with a higher weight gets
+ * that many giveaways ended per turn, so a guild with many giveaways ending
+ * at once can't hold up everyone else.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class EndingQueue
+{
+    public enum Lane { ON_TIME, BACKLOG }
+    
+    private final Map<Lane,LaneQueue> lanes = new HashMap<>();
+    
+    public EndingQueue()
+    {
+        for(Lane lane: Lane.values())
+            lanes.put(lane, new LaneQueue());
+    }
+    
+    public synchronized void add(Giveaway giveaway, Lane lane, int weight)
+    {
+        lanes.get(lane).add(new Entry(giveaway, lane), Math.max(1, weight));
+    }
+    
+    public synchronized Entry poll()
+    {
+        for(Lane lane: Lane.values())
+        {
+            Entry e = lanes.get(lane).poll();
+            if(e != null)
+                return e;
+        }
+        return null;
+    }
+    
+    public synchronized int size(Lane lane)
+    {
+        return lanes.get(lane).size;
+    }
+    
+    public synchronized int getGuildCount(Lane lane)
+    {
+        return lanes.get(lane).guilds.size();
+    }
+    
+    public static class Entry
+    {
+        public final Giveaway giveaway;
+        public final Lane lane;
+        
+        private Entry(Giveaway giveaway, Lane lane)
+        {
+            this.giveaway = giveaway;
+            this.lane = lane;
+        }
+    }
+    
+    // deficit round-robin across guilds, first-in-first-out within a guild
+    private static class LaneQueue
+    {
+        private final Map<Long,GuildQueue> guilds = new HashMap<>();
+        private final ArrayDeque<GuildQueue> turns = new ArrayDeque<>();
+        private GuildQueue current = null;
+        private int size = 0;
+        
+        private void add(Entry e, int weight)
+        {
+            GuildQueue gq = guilds.get(e.giveaway.getGuildId());
+            if(gq == null)
+            {
+                gq = new GuildQueue(e.giveaway.getGuildId());
+                guilds.put(gq.guildId, gq);
+                turns.add(gq);
+            }
+            gq.weight = weight;
+            gq.entries.add(e);
+            size++;
+        }
+        
+        private Entry poll()
+        {
+            // move on to the next guild once the current one has used its turn
+            if(current == null || current.credits <= 0)
+            {
+                if(current != null)
+                    turns.add(current);
+                current = turns.poll();
+                if(current == null)
+                    return null;
+                current.credits = current.weight;
+            }
+            Entry e = current.entries.poll();
+            current.credits--;
+            size--;
+            if(current.entries.isEmpty())
+            {
+                guilds.remove(current.guildId);
+                current = null;
+            }
+            return e;
+        }
+    }
+    
+    private static class GuildQueue
+    {
+        private final long guildId;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private int weight = 1, credits = 0;
+        
+        private GuildQueue(long guildId)
+        {
+            this.guildId = guildId;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.util.GiveawayUtil;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the entrant pools of recently rerolled giveaways, so that rerolling
+ * the same giveaway again doesn't need to download the summary. Pools are
+ * evicted least-recently-used first once their combined size goes over the
+ * byte limit. Each pool also holds the giveaway's original winners from the
+ * summary, which rerolls skip while there is anyone else to pick.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class EntrantPoolCache
+{
+    private final static long POOL_OVERHEAD = 128L,     // map entry, key, pool object, array header
+                              WINNER_OVERHEAD = 64L;    // boxed long in a hash set
+
+    private final long maxBytes;
+    private final LinkedHashMap<String,Pool> pools = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0L, hits = 0L, misses = 0L, evictions = 0L;
+
+    public EntrantPoolCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized Pool get(String summaryKey)
+    {
+        Pool pool = pools.get(summaryKey);
+        if(pool == null)
+            misses++;
+        else
+            hits++;
+        return pool;
+    }
+
+    public synchronized Pool put(String summaryKey, long[] entries, long[] winners)
+    {
+        Pool pool = new Pool(summaryKey, entries, winners);
+        Pool old = pools.put(summaryKey, pool);
+        if(old != null)
+            bytes -= old.weight;
+        bytes += pool.weight;
+        evict();
+        return pool;
+    }
+
+    /**
+     * Picks new winners from a pool. This only depends on the summary, so 
+     * the result is the same whether or not the pool was cached.
+     *
+     * @param pool the entrant pool
+     * @param count the number of winners to pick
+     * @return the winners, leaving out the original winners unless they're the only entrants
+     */
+    public List<Long> selectWinners(Pool pool, int count)
+    {
+        List<Long> winners = GiveawayUtil.selectWinners(pool.entries, count, pool.winners);
+        return winners.isEmpty() ? GiveawayUtil.selectWinners(pool.entries, count) : winners;
+    }
+
+    public synchronized Map<String,Long> getMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        map.put("Pools", (long) pools.size());
+        map.put("Bytes", bytes);
+        map.put("Hits", hits);
+        map.put("Misses", misses);
+        map.put("Evictions", evictions);
+        return map;
+    }
+
+    private void evict()
+    {
+        // always keep the most recent pool, even if it's over the limit on its own
+        Iterator<Pool> it = pools.values().iterator();
+        while(bytes > maxBytes && pools.size() > 1)
+        {
+            bytes -= it.next().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public static class Pool
+    {
+        private final long[] entries;
+        private final Set<Long> winners = new HashSet<>();
+        private final long weight;
+
+        private Pool(String summaryKey, long[] entries, long[] winners)
+        {
+            this.entries = entries;
+            for(long w: winners)
+                this.winners.add(w);
+            this.weight = POOL_OVERHEAD + 2L * summaryKey.length() + 8L * entries.length + WINNER_OVERHEAD * winners.length;
+        }
+
+        public int size()
+        {
+            return entries.length;
+        }
+    }
+}
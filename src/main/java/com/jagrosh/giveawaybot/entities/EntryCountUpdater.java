@@ -0,0 +1,200 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.RestDispatcher.Priority;
+import com.jagrosh.interactions.entities.SentMessage;
+import com.jagrosh.interactions.requests.RestClient.RestResponse;
+import com.jagrosh.interactions.requests.Route;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.LongPredicate;
+import org.json.JSONObject;
+
+/**
+ * Keeps the entry count of busy giveaways up to date without rewriting the
+ * message on every click. Once a giveaway is entered faster than the click
+ * threshold, entering it only gets an ephemeral confirmation, and the public
+ * message is updated with the highest count seen at most once per interval.
+ * Updates are checked again right before they're sent, and an ending waits
+ * for any update that's already been sent, so an update can never land on
+ * top of an ended giveaway.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class EntryCountUpdater
+{
+    private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Long,Integer> pending = new ConcurrentHashMap<>();
+    private final Map<Long,Update> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hotEntries = new AtomicLong(), updates = new AtomicLong();
+    private final RateLimiter clicks;
+    private final LongPredicate running;
+    private final RestDispatcher rest;
+    private final BiFunction<Giveaway,Integer,SentMessage> renderer;
+    private final long interval;
+    
+    /**
+     * @param running checks that a giveaway is still running and not being ended
+     * @param rest the dispatcher for message updates
+     * @param renderer renders a giveaway with the given number of entries
+     * @param clicksPerSecond the click rate above which updates are batched
+     * @param interval the minimum time between updates of a busy giveaway, in seconds
+     */
+    public EntryCountUpdater(LongPredicate running, RestDispatcher rest, BiFunction<Giveaway,Integer,SentMessage> renderer, double clicksPerSecond, long interval)
+    {
+        this.running = running;
+        this.rest = rest;
+        this.renderer = renderer;
+        this.clicks = new RateLimiter(16384, Math.max(1.0, clicksPerSecond), clicksPerSecond);
+        this.interval = interval;
+    }
+    
+    public void shutdown()
+    {
+        schedule.shutdown();
+    }
+    
+    /**
+     * Records an entry, and checks if the giveaway is being entered faster
+     * than the threshold. If it is, an update of the public message is 
+     * scheduled, and the caller should not update the message itself.
+     *
+     * @param giveaway the giveaway that was entered
+     * @param entries the number of entries after this one
+     * @return true if the message update is deferred
+     */
+    public boolean deferUpdate(Giveaway giveaway, int entries)
+    {
+        long id = giveaway.getMessageId();
+        boolean calm = clicks.tryAcquire(id);
+        if(calm && !pending.containsKey(id))
+            return false;
+        hotEntries.incrementAndGet();
+        // counts from concurrent clicks can arrive out of order, so keep the highest
+        boolean[] first = new boolean[1];
+        pending.compute(id, (k, v) -> 
+        {
+            first[0] = v == null;
+            return v == null ? entries : Math.max(v, entries);
+        });
+        if(first[0] && !scheduleUpdate(giveaway))
+        {
+            pending.remove(id);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Stops updates of a giveaway that's being ended. An update that's still
+     * queued is cancelled, and one that's already been sent is waited on, so
+     * that it can't overwrite the ended message. The caller must already have
+     * made the running check fail for the giveaway.
+     *
+     * @param giveaway the giveaway being ended
+     * @param deadline how long to wait for an update that's been sent
+     */
+    public void awaitIdle(Giveaway giveaway, Deadline deadline)
+    {
+        pending.remove(giveaway.getMessageId());
+        Update u = inFlight.get(giveaway.getMessageId());
+        if(u == null)
+            return;
+        CompletableFuture<RestResponse> request = u.request;
+        if(request != null)
+            request.cancel(false);
+        try
+        {
+            deadline.await(u.done);
+        }
+        catch(ExecutionException | InterruptedException | TimeoutException | CancellationException ignore) {}
+    }
+    
+    public Map<String,Long> getMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        map.put("Pending", (long) pending.size());
+        map.put("HotEntries", hotEntries.get());
+        map.put("Updates", updates.get());
+        return map;
+    }
+    
+    private boolean scheduleUpdate(Giveaway giveaway)
+    {
+        try
+        {
+            schedule.schedule(() -> update(giveaway), interval, TimeUnit.SECONDS);
+            return true;
+        }
+        catch(RejectedExecutionException ex)
+        {
+            return false;
+        }
+    }
+    
+    private void update(Giveaway giveaway)
+    {
+        long id = giveaway.getMessageId();
+        Integer count = pending.get(id);
+        if(count == null)
+            return;
+        // don't overwrite the message of a giveaway that has since ended
+        if(!running.test(id))
+        {
+            pending.remove(id);
+            return;
+        }
+        updates.incrementAndGet();
+        JSONObject json = renderer.apply(giveaway, count).toJson();
+        Update u = new Update();
+        inFlight.put(id, u);
+        u.request = rest.submit(Priority.BACKGROUND, "channel:" + giveaway.getChannelId(), "PATCH_MESSAGE", r -> 
+        {
+            // endings go ahead of background work, so check again right before sending
+            if(!running.test(id))
+                throw new CancellationException("Giveaway " + id + " has ended");
+            return r.request(Route.PATCH_MESSAGE.format(giveaway.getChannelId(), id), json);
+        });
+        u.request.whenComplete((res, ex) -> 
+        {
+            inFlight.remove(id, u);
+            u.done.complete(null);
+            // clicks that came in while this was being sent get the next update
+            Integer left = pending.compute(id, (k, v) -> v == null || v <= count ? null : v);
+            if(left != null && !scheduleUpdate(giveaway))
+                pending.remove(id);
+        });
+    }
+    
+    private static class Update
+    {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile CompletableFuture<RestResponse> request;
+    }
+}
@@ -15,44 +15,267 @@
  */
 package com.jagrosh.giveawaybot.entities;
 
+import club.minnced.discord.webhook.WebhookClient;
 import club.minnced.discord.webhook.WebhookClientBuilder;
-import club.minnced.discord.webhook.WebhookCluster;
+import club.minnced.discord.webhook.exception.HttpException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Uploads files through a set of webhooks. Uploads are queued (up to a
+ * limit) and run concurrently, with a cap on how many can use each webhook
+ * at once. Each webhook's latency and error rate are tracked, and uploads
+ * go to the healthiest webhook available; one that fails or gets rate
+ * limited is skipped for a while, and the upload is retried on another.
+ * Uploaded files can be streamed back, within a deadline.
  *
  * @author John Grosh (john.a.grosh@gmail.com)
  */
 public class FileUploader
 {
-    private final WebhookCluster cluster = new WebhookCluster();
-    private final AtomicInteger index = new AtomicInteger(0);
-    
+    private final static int PER_WEBHOOK_CONCURRENCY = 2,
+                             MAX_QUEUED = 500,
+                             MAX_ATTEMPTS = 3;
+    private final static long UPLOAD_TIMEOUT = 20000L,
+                              MAX_WAIT = 20000L,
+                              MIN_WAIT = 50L,
+                              BASE_BACKOFF = 250L,
+                              MAX_BACKOFF = 60000L;
+    private final static double SMOOTHING = 0.2;
+
+    private final Logger log = LoggerFactory.getLogger(FileUploader.class);
+    private final List<Target> targets = new ArrayList<>();
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong uploaded = new AtomicLong(),
+                             failed = new AtomicLong(),
+                             retried = new AtomicLong(),
+                             rejected = new AtomicLong(),
+                             bytes = new AtomicLong(),
+                             downloaded = new AtomicLong();
+
     public FileUploader(List<String> urls)
     {
         for(String url: urls)
-            cluster.addWebhooks(new WebhookClientBuilder(url).build());
+            targets.add(new Target(new WebhookClientBuilder(url).build()));
+        int threads = Math.max(1, targets.size() * PER_WEBHOOK_CONCURRENCY);
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED));
+    }
+
+    public CompletableFuture<String> uploadFileAsync(String contents, String filename)
+    {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try
+        {
+            pool.execute(() ->
+            {
+                try
+                {
+                    future.complete(upload(contents.getBytes(StandardCharsets.UTF_8), filename));
+                }
+                catch(Exception ex)
+                {
+                    future.completeExceptionally(ex);
+                }
+            });
+        }
+        catch(RejectedExecutionException ex)
+        {
+            rejected.incrementAndGet();
+            future.completeExceptionally(ex);
+        }
+        return future;
     }
-    
-    public String uploadFile(String contents, String filename)
+
+    public String uploadFile(String contents, String filename, Deadline deadline)
     {
-        int val = index.incrementAndGet();
         try
         {
-            return cluster.getWebhooks()
-                    .get(val % cluster.getWebhooks().size())
-                    .send(contents.getBytes(), filename)
-                    .get().getAttachments().get(0).getUrl();
+            return deadline.await(uploadFileAsync(contents, filename));
         }
         catch(Exception ex)
         {
+            log.warn(String.format("Failed to upload %s: %s", filename, ex));
             return null;
         }
     }
-    
+
+    /**
+     * Downloads a file, such as one that was uploaded earlier, and reads it as
+     * a stream. Connecting and reading share the time left on the deadline,
+     * and the connection is closed once the deadline passes.
+     *
+     * @param url the url of the file
+     * @param deadline the deadline for the whole download
+     * @param reader reads the contents of the file
+     * @return the result of the reader
+     * @throws IOException if the download fails or runs out of time
+     */
+    public <T> T downloadFile(String url, Deadline deadline, StreamReader<T> reader) throws IOException
+    {
+        if(deadline.isExpired())
+            throw new IOException("Deadline expired before downloading " + url);
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        int timeout = (int) Math.max(1L, deadline.remaining());
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        ScheduledFuture<?> abort = watchdog.schedule(conn::disconnect, timeout, TimeUnit.MILLISECONDS);
+        try(InputStream in = new BufferedInputStream(conn.getInputStream()))
+        {
+            T result = reader.read(in);
+            downloaded.incrementAndGet();
+            return result;
+        }
+        finally
+        {
+            abort.cancel(false);
+            conn.disconnect();
+        }
+    }
+
+    public Map<String,Long> getMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        map.put("Uploaded", uploaded.get());
+        map.put("Failed", failed.get());
+        map.put("Retried", retried.get());
+        map.put("Rejected", rejected.get());
+        map.put("Bytes", bytes.get());
+        map.put("Downloaded", downloaded.get());
+        map.put("Queued", (long) pool.getQueue().size());
+        map.put("Healthy", targets.stream().filter(t -> t.isAvailable()).count());
+        return map;
+    }
+
     public void shutdown()
     {
-        cluster.close();
+        pool.shutdown();
+        watchdog.shutdown();
+        targets.forEach(t -> t.client.close());
+    }
+
+    private String upload(byte[] data, String filename) throws InterruptedException
+    {
+        long giveUp = System.currentTimeMillis() + MAX_WAIT;
+        int attempt = 0;
+        while(attempt < MAX_ATTEMPTS)
+        {
+            // when every webhook is blocked or busy, wait for one instead of using up an attempt
+            Target target = acquire();
+            if(target == null)
+            {
+                long wait = Math.max(MIN_WAIT, earliestAvailable() - System.currentTimeMillis());
+                if(targets.isEmpty() || System.currentTimeMillis() + wait > giveUp)
+                    break;
+                Thread.sleep(wait);
+                continue;
+            }
+            attempt++;
+            long start = System.nanoTime();
+            try
+            {
+                String url = target.client.send(data, filename).get(UPLOAD_TIMEOUT, TimeUnit.MILLISECONDS).getAttachments().get(0).getUrl();
+                target.success(System.nanoTime() - start);
+                uploaded.incrementAndGet();
+                bytes.addAndGet(data.length);
+                return url;
+            }
+            catch(ExecutionException | TimeoutException ex)
+            {
+                Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                target.failure(cause instanceof HttpException && ((HttpException) cause).getCode() == 429);
+                log.warn(String.format("Upload attempt %d of %s failed: %s", attempt, filename, cause));
+            }
+            finally
+            {
+                target.slots.release();
+            }
+            if(attempt < MAX_ATTEMPTS)
+            {
+                retried.incrementAndGet();
+                Thread.sleep(BASE_BACKOFF << attempt);
+            }
+        }
+        failed.incrementAndGet();
+        throw new IllegalStateException("No webhook could upload " + filename);
+    }
+
+    private long earliestAvailable()
+    {
+        return targets.stream().mapToLong(t -> t.blockedUntil).min().orElse(0L);
+    }
+
+    private Target acquire()
+    {
+        // try the healthiest webhooks first; scores keep changing as uploads 
+        // finish, so sort a snapshot of them to keep the ordering consistent
+        Target[] snapshot = targets.toArray(new Target[0]);
+        double[] scores = new double[snapshot.length];
+        Integer[] order = new Integer[snapshot.length];
+        for(int i = 0; i < snapshot.length; i++)
+        {
+            scores[i] = snapshot[i].score();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+        for(int i: order)
+            if(snapshot[i].isAvailable() && snapshot[i].slots.tryAcquire())
+                return snapshot[i];
+        return null;
+    }
+
+    public interface StreamReader<T>
+    {
+        T read(InputStream in) throws IOException;
+    }
+
+    private class Target
+    {
+        private final WebhookClient client;
+        private final Semaphore slots = new Semaphore(PER_WEBHOOK_CONCURRENCY);
+        private volatile double latency = 0, errorRate = 0;
+        private volatile long blockedUntil = 0L, backoff = BASE_BACKOFF;
+
+        private Target(WebhookClient client)
+        {
+            this.client = client;
+        }
+
+        private boolean isAvailable()
+        {
+            return System.currentTimeMillis() >= blockedUntil;
+        }
+
+        private synchronized double score()
+        {
+            return (latency + 1) * (1 + 10 * errorRate);
+        }
+
+        private synchronized void success(long nanos)
+        {
+            latency = latency * (1 - SMOOTHING) + TimeUnit.NANOSECONDS.toMillis(nanos) * SMOOTHING;
+            errorRate = errorRate * (1 - SMOOTHING);
+            backoff = BASE_BACKOFF;
+        }
+
+        private synchronized void failure(boolean rateLimited)
+        {
+            errorRate = errorRate * (1 - SMOOTHING) + SMOOTHING;
+            backoff = Math.min(MAX_BACKOFF, rateLimited ? Math.max(backoff, 5000L) * 2 : backoff * 2);
+            blockedUntil = System.currentTimeMillis() + backoff;
+        }
     }
 }
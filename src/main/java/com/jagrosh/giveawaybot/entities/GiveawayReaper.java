@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.data.Database;
+import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.interactions.requests.RestClient.RestResponse;
+import com.jagrosh.interactions.requests.Route;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes giveaways that can never be ended, such as ones in deleted
+ * channels or in guilds that removed the bot. Channels are reported when a
+ * request fails with an error that suggests this; a confirmed unknown
+ * channel is cleaned up right away, and anything less certain is marked as
+ * suspect and checked by a periodic sweep, a few channels at a time. Missing
+ * access is often temporary, so a channel that can't be read is checked
+ * again later rather than cleaned up.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class GiveawayReaper
+{
+    public final static int UNKNOWN_CHANNEL = 10003,
+                            UNKNOWN_GUILD = 10004,
+                            UNKNOWN_MESSAGE = 10008,
+                            MISSING_ACCESS = 50001;
+    private final static int MAX_PER_SWEEP = 10,
+                             MAX_SUSPECTS = 10000;
+    private final static long SWEEP_INTERVAL = 30L,
+                              REQUEST_TIMEOUT = 10000L,
+                              RECHECK_DELAY = 60 * 60 * 1000L;
+    
+    private final Logger log = LoggerFactory.getLogger(GiveawayReaper.class);
+    private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Long,Long> suspects = new ConcurrentHashMap<>(); // channel -> when to check it
+    private final AtomicLong reaped = new AtomicLong();
+    private final Database database;
+    private final RestDispatcher rest;
+    
+    public GiveawayReaper(Database database, RestDispatcher rest)
+    {
+        this.database = database;
+        this.rest = rest;
+    }
+    
+    public void start()
+    {
+        schedule.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.SECONDS);
+    }
+    
+    public void shutdown()
+    {
+        schedule.shutdown();
+    }
+    
+    /**
+     * Reports a failed request in a channel. This never blocks.
+     *
+     * @param channelId the channel the request was for
+     * @param errorCode the Discord error code of the response
+     */
+    public void reportChannel(long channelId, int errorCode)
+    {
+        switch(errorCode)
+        {
+            case UNKNOWN_CHANNEL:
+                schedule.execute(() -> reapChannel(channelId));
+                break;
+            case UNKNOWN_MESSAGE:
+            case MISSING_ACCESS:
+                markSuspect(channelId);
+                break;
+        }
+    }
+    
+    public void markSuspect(long channelId)
+    {
+        markSuspect(channelId, 0L);
+    }
+    
+    private void markSuspect(long channelId, long checkAt)
+    {
+        if(suspects.size() < MAX_SUSPECTS)
+            suspects.putIfAbsent(channelId, checkAt);
+    }
+    
+    /**
+     * Removes all giveaways from a guild that the bot is no longer in.
+     *
+     * @param guildId the guild that removed the bot
+     */
+    public void reapGuild(long guildId)
+    {
+        schedule.execute(() -> 
+        {
+            int count = database.removeGiveawaysByGuild(guildId);
+            if(count > 0)
+                log.info(String.format("Removed %d giveaways from departed guild %d", count, guildId));
+            reaped.addAndGet(count);
+        });
+    }
+    
+    public long getReapedCount()
+    {
+        return reaped.get();
+    }
+    
+    public int getSuspectCount()
+    {
+        return suspects.size();
+    }
+    
+    private void reapChannel(long channelId)
+    {
+        suspects.remove(channelId);
+        int count = database.removeGiveawaysByChannel(channelId);
+        if(count > 0)
+            log.info(String.format("Removed %d giveaways from unusable channel %d", count, channelId));
+        reaped.addAndGet(count);
+    }
+    
+    // checks a few suspect channels by fetching one of their giveaway messages
+    private void sweep()
+    {
+        long now = System.currentTimeMillis();
+        List<Long> due = new ArrayList<>();
+        for(Map.Entry<Long,Long> e: suspects.entrySet())
+        {
+            if(due.size() >= MAX_PER_SWEEP)
+                break;
+            if(e.getValue() <= now)
+                due.add(e.getKey());
+        }
+        for(long channelId: due)
+        {
+            suspects.remove(channelId);
+            try
+            {
+                List<Giveaway> giveaways = database.getGiveawaysByChannel(channelId);
+                if(giveaways.isEmpty())
+                    continue;
+                Giveaway g = giveaways.get(0);
+                RestResponse res = rest.submit(RestDispatcher.Priority.BACKGROUND, "channel:" + channelId, "GET_MESSAGE", 
+                        r -> r.request(Route.GET_MESSAGE.format(channelId, g.getMessageId()))).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+                if(res.isSuccess())
+                    continue;
+                switch(res.getErrorSpecific())
+                {
+                    case UNKNOWN_CHANNEL:
+                        reapChannel(channelId);
+                        break;
+                    case MISSING_ACCESS:
+                        markSuspect(channelId, now + RECHECK_DELAY);
+                        break;
+                    case UNKNOWN_MESSAGE:
+                        // just this giveaway is gone, but check the rest of the channel next time
+                        database.removeGiveaway(g.getMessageId());
+                        reaped.incrementAndGet();
+                        if(giveaways.size() > 1)
+                            markSuspect(channelId);
+                        break;
+                }
+            }
+            catch(Exception ex)
+            {
+                log.warn(String.format("Failed to check channel %d: %s", channelId, ex));
+                markSuspect(channelId, now + RECHECK_DELAY);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.data.Database;
+import com.jagrosh.interactions.entities.Guild;
+import com.jagrosh.interactions.requests.RestClient.RestResponse;
+import com.jagrosh.interactions.requests.Route;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes cached guild metadata (owner, locale) in the background so that
+ * commands don't usually wait on Discord for it. Each guild has at most one
+ * refresh in flight, refreshes are spread out with some jitter, and the total number
+ * of refreshes per second is capped so bursts don't compete with user-facing
+ * requests.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class GuildRefresher
+{
+    private final static int MAX_PER_SECOND = 5,
+                             MAX_PENDING = 5000,
+                             MAX_JITTER = 10000; // ms
+    private final static long REQUEST_TIMEOUT = 5000L,
+                              URGENT_RETRY = 200L;
+
+    private final Logger log = LoggerFactory.getLogger(GuildRefresher.class);
+    private final ScheduledExecutorService schedule = Executors.newScheduledThreadPool(2);
+    private final Map<Long,CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final Semaphore permits = new Semaphore(MAX_PER_SECOND);
+    private final RestDispatcher rest;
+    private final Database database;
+    private final GiveawayReaper reaper;
+
+    public GuildRefresher(RestDispatcher rest, Database database, GiveawayReaper reaper)
+    {
+        this.rest = rest;
+        this.database = database;
+        this.reaper = reaper;
+    }
+
+    public void start()
+    {
+        schedule.scheduleAtFixedRate(() -> permits.release(MAX_PER_SECOND - permits.availablePermits()), 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void shutdown()
+    {
+        schedule.shutdown();
+    }
+
+    /**
+     * Requests that a guild's metadata be refreshed. This never blocks, and
+     * joins the pending refresh if there already is one for the guild.
+     *
+     * @param guildId the guild to refresh
+     * @param urgent true if the guild has never been retrieved before
+     * @return a future that completes when the refresh is done
+     */
+    public CompletableFuture<Void> request(long guildId, boolean urgent)
+    {
+        CompletableFuture<Void> existing = pending.get(guildId);
+        if(existing != null)
+            return existing;
+        if(pending.size() >= MAX_PENDING)
+            return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        existing = pending.putIfAbsent(guildId, future);
+        if(existing != null)
+            return existing;
+        long delay = urgent ? 0 : ThreadLocalRandom.current().nextInt(MAX_JITTER);
+        schedule.schedule(() -> refresh(guildId, urgent), delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    private void refresh(long guildId, boolean urgent)
+    {
+        // over the rate cap, so try again a bit later; sooner if someone is waiting on it
+        if(!permits.tryAcquire())
+        {
+            long delay = urgent ? URGENT_RETRY : 1000 + ThreadLocalRandom.current().nextInt(MAX_JITTER);
+            schedule.schedule(() -> refresh(guildId, urgent), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        try
+        {
+            Guild g;
+            try
+            {
+                RestResponse res = rest.submit(RestDispatcher.Priority.BACKGROUND, "guild:" + guildId, "GET_GUILD", r -> r.request(Route.GET_GUILD.format(guildId), "")).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+                
+                // the bot isn't in the guild anymore, so its giveaways can't be ended; 
+                // missing access can be temporary, so it isn't enough to remove anything
+                if(res.getErrorSpecific() == GiveawayReaper.UNKNOWN_GUILD)
+                    reaper.reapGuild(guildId);
+                g = res.isSuccess() ? new Guild(res.getBody()) : null;
+            }
+            catch(Exception ex)
+            {
+                g = null;
+                log.error(String.format("Failed to retrieve guild: %s", ex));
+            }
+            database.setAutomaticGuildSettings(guildId, Instant.now(), g);
+        }
+        catch(Exception ex)
+        {
+            log.error("Exception when refreshing guild: ", ex);
+        }
+        finally
+        {
+            CompletableFuture<Void> future = pending.remove(guildId);
+            if(future != null)
+                future.complete(null);
+        }
+    }
+}
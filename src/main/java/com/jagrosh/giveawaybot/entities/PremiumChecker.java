@@ -18,10 +18,11 @@ package com.jagrosh.giveawaybot.entities;
 import com.jagrosh.giveawaybot.Constants;
 import com.jagrosh.giveawaybot.data.CachedUser;
 import com.jagrosh.giveawaybot.data.Database;
+import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -29,26 +30,36 @@ import javax.security.auth.login.LoginException;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.OnlineStatus;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateEvent;
 import net.dv8tion.jda.api.hooks.EventListener;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
-import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
-import net.dv8tion.jda.internal.utils.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Keeps premium levels in sync with the roles on the support server. Only
+ * members holding a premium role are cached; member updates (which are sent
+ * for uncached members too) and departures are queued as they happen and
+ * written in one batch every few seconds, with a periodic full
+ * reconciliation as a safety net.
  *
  * @author John Grosh (john.a.grosh@gmail.com)
  */
 public class PremiumChecker
 {
+    private final static long RECONCILE_INTERVAL = 10;
+    
     private final Logger log = LoggerFactory.getLogger(PremiumChecker.class);
+    private final Map<Long, CachedUser> pending = new ConcurrentHashMap<>();
     private final String botToken;
     private final Database database;
     private final WebhookLog webhook;
@@ -69,8 +80,8 @@ public class PremiumChecker
         webhook.send(WebhookLog.Level.INFO, Constants.TADA + " Starting premium checker...");
         jda = JDABuilder.createDefault(botToken, GatewayIntent.GUILD_MEMBERS)
                 .setStatus(OnlineStatus.ONLINE)
-                .setMemberCachePolicy(MemberCachePolicy.ALL)
-                .setChunkingFilter(ChunkingFilter.ALL)
+                .setMemberCachePolicy(member -> getLevel(member) != PremiumLevel.NONE)
+                .setChunkingFilter(ChunkingFilter.include(PremiumLevel.SERVER_ID))
                 .disableCache(EnumSet.of(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS, 
                         CacheFlag.EMOTE, CacheFlag.VOICE_STATE))
                 .build();
@@ -82,7 +93,21 @@ public class PremiumChecker
                 if(event instanceof ReadyEvent)
                 {
                     webhook.send(WebhookLog.Level.INFO, Constants.TADA + " Checker ready! `" + jda.getGuildById(PremiumLevel.SERVER_ID).getMemberCache().size() + "`");
-                    schedule.scheduleWithFixedDelay(() -> update(), 0, 10, TimeUnit.MINUTES);
+                    schedule.scheduleWithFixedDelay(() -> reconcile(), 0, RECONCILE_INTERVAL, TimeUnit.MINUTES);
+                    schedule.scheduleWithFixedDelay(() -> flush(), 5, 5, TimeUnit.SECONDS);
+                }
+                else if(event instanceof GuildMemberRemoveEvent)
+                {
+                    GuildMemberRemoveEvent e = (GuildMemberRemoveEvent) event;
+                    if(e.getGuild().getIdLong() == PremiumLevel.SERVER_ID)
+                        queue(e.getUser(), PremiumLevel.NONE);
+                }
+                else if(event instanceof GuildMemberUpdateEvent)
+                {
+                    // role events are only fired for cached members, so non-premium members gaining a role would be missed
+                    GuildMemberUpdateEvent e = (GuildMemberUpdateEvent) event;
+                    if(e.getGuild().getIdLong() == PremiumLevel.SERVER_ID)
+                        queue(e.getMember().getUser(), getLevel(e.getMember()));
                 }
             }
         });
@@ -94,75 +119,106 @@ public class PremiumChecker
         jda.shutdown();
     }
     
-    private void update()
+    private static PremiumLevel getLevel(Member member)
+    {
+        PremiumLevel level = PremiumLevel.NONE;
+        for(PremiumLevel p: PremiumLevel.values())
+            for(Role r: member.getRoles())
+                if(r.getIdLong() == p.roleId)
+                    level = p;
+        return level;
+    }
+    
+    private void queue(User u, PremiumLevel level)
+    {
+        CachedUser cu = new CachedUser();
+        cu.setId(u.getIdLong());
+        cu.setUsername(u.getName());
+        cu.setDiscriminator(u.getDiscriminator());
+        cu.setAvatar(u.getAvatarId());
+        cu.setPremiumLevel(level);
+        pending.put(u.getIdLong(), cu);
+    }
+    
+    private void reconcile()
     {
         try
         {
-            log.debug("Updating premium users...");
-
+            log.debug("Reconciling premium users...");
+            Guild guild = jda.getGuildById(PremiumLevel.SERVER_ID);
+            
+            // anyone currently holding a premium role
+            guild.getMemberCache().forEach(m -> queue(m.getUser(), getLevel(m)));
+            
+            // anyone that has premium but is no longer cached has lost it
+            for(CachedUser old: database.getAllPremiumUsers())
+            {
+                if(guild.getMemberById(old.getId()) == null && !pending.containsKey(old.getId()))
+                {
+                    CachedUser cu = new CachedUser();
+                    cu.setId(old.getId());
+                    cu.setPremiumLevel(PremiumLevel.NONE);
+                    pending.put(old.getId(), cu);
+                }
+            }
+            flush();
+        }
+        catch(Exception ex)
+        {
+            log.error("Exception when reconciling premium users: ", ex);
+        }
+    }
+    
+    private synchronized void flush()
+    {
+        List<CachedUser> changes = new ArrayList<>();
+        try
+        {
+            if(pending.isEmpty())
+                return;
+            
             // summary of changes
             StringBuilder sb = new StringBuilder();
-
-            // make a map of all users that have premium levels
-            Map<Long, Pair<Member, PremiumLevel>> added = new HashMap<>();
-
-            // to start, assume that all users need to be added
-            for(PremiumLevel p: PremiumLevel.values())
+            
+            // skip anything that didn't actually change
+            for(Long userId: pending.keySet())
             {
-                Role role = jda.getGuildById(PremiumLevel.SERVER_ID).getRoleById(p.roleId);
-                if(role == null)
+                CachedUser cu = pending.remove(userId);
+                PremiumLevel oldLevel = database.getUserPremiumLevel(userId);
+                PremiumLevel newLevel = cu == null ? oldLevel : cu.getPremiumLevel();
+                if(newLevel == oldLevel)
                     continue;
-                jda.getGuildById(PremiumLevel.SERVER_ID).getMembersWithRoles(role).forEach(m -> added.put(m.getUser().getIdLong(), Pair.of(m, p)));
-            }
-
-            // now, update the removed and changed lists
-            List<CachedUser> premiumUsers = database.getAllPremiumUsers();
-            for(CachedUser old: premiumUsers)
-            {
-                long userId = old.getId();
-                PremiumLevel oldLevel = old.getPremiumLevel();
-                Pair<Member, PremiumLevel> newLevel = added.get(userId);
-
-                // if the member no longer has premium, add to removed list and update db
-                if(newLevel == null)
+                changes.add(cu);
+                if(newLevel == PremiumLevel.NONE)
                 {
-                    database.removePremium(userId);
                     sb.append("\n- ").append(userId).append(" ").append(oldLevel);
                     log.info(String.format("Removed %d from %s", userId, oldLevel));
                 }
-
-                // if the member needs premium level changed, add to changed list and update db
-                else if(newLevel.getRight() != oldLevel)
+                else if(oldLevel == PremiumLevel.NONE)
                 {
-                    net.dv8tion.jda.api.entities.User u = newLevel.getLeft().getUser();
-                    database.updatePremiumLevel(userId, u.getName(), u.getDiscriminator(), u.getAvatarId(), newLevel.getRight());
-                    sb.append("\n# ").append(userId).append(" ").append(oldLevel).append(" -> ").append(newLevel.getRight());
-                    log.info(String.format("Changed %d from %s to %s", userId, oldLevel, newLevel.getRight()));
+                    sb.append("\n+ ").append(userId).append(" ").append(newLevel);
+                    log.info(String.format("Added %d to %s", userId, newLevel));
+                }
+                else
+                {
+                    sb.append("\n# ").append(userId).append(" ").append(oldLevel).append(" -> ").append(newLevel);
+                    log.info(String.format("Changed %d from %s to %s", userId, oldLevel, newLevel));
                 }
-
-                //else if the level has not channged, then we do nothing except remove from 'added'
-                //  do nothing
-
-                // remove from map to find the members that are newly getting premium
-                added.remove(userId);
-            }
-
-            // for any remaining additions in the map, update
-            for(Pair<Member, PremiumLevel> pair: added.values())
-            {
-                net.dv8tion.jda.api.entities.User u = pair.getLeft().getUser();
-                database.updatePremiumLevel(u.getIdLong(), u.getName(), u.getDiscriminator(), u.getAvatarId(), pair.getRight());
-                sb.append("\n+ ").append(u.getId()).append(" ").append(pair.getRight());
-                log.info(String.format("Added %d to %s", u.getIdLong(), pair.getRight()));
             }
-
-            // send to webhook, if anything changed
-            if(sb.length() > 1)
-                webhook.send(WebhookLog.Level.INFO, "**Premium Update** ```diff" + sb.toString() + "\n```");
+            
+            // apply all changes at once
+            if(changes.isEmpty())
+                return;
+            database.updatePremiumLevels(changes);
+            
+            // send to webhook
+            webhook.sendCodeBlock(WebhookLog.Level.INFO, "**Premium Update**", "diff", sb.substring(1));
         }
         catch(Exception ex)
         {
-            ex.printStackTrace();
+            // try again next time, unless there's already a newer change queued
+            changes.forEach(cu -> pending.putIfAbsent(cu.getId(), cu));
+            log.error("Exception when updating premium levels: ", ex);
         }
     }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for a large number of keys (users, guilds), kept in a fixed
+ * size table so memory stays bounded. Each slot is a single long, updated with
+ * compare-and-set, holding a fingerprint of the key, the last refill time and
+ * the remaining tokens:
+ *
+ *   | fingerprint (16) | time in 10ms ticks (32) | hundredths of a token (16) |
+ *
+ * A key can use one of two slots. A slot whose bucket has refilled completely
+ * is the same as an empty one, so it can be taken over by another key. If both
+ * slots are in use by other keys, the request is allowed rather than blocking
+ * an innocent user. Keys that share a fingerprint and slot share a bucket, 
+ * which is rare enough to not matter for rate limiting.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class RateLimiter
+{
+    private final static long TICK_MILLIS = 10L,
+                              TOKEN_UNITS = 100L,
+                              TIME_MASK = 0xFFFFFFFFL,
+                              TOKEN_MASK = 0xFFFFL;
+    
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long capacity, fullTicks;
+    private final double unitsPerTick;
+    private final LongSupplier clock;
+    private final AtomicLong allowed = new AtomicLong(), limited = new AtomicLong(), overflow = new AtomicLong();
+    
+    /**
+     * @param size the number of slots, rounded up to a power of two
+     * @param capacity the maximum number of tokens in a bucket
+     * @param perSecond the number of tokens added to a bucket per second
+     */
+    public RateLimiter(int size, double capacity, double perSecond)
+    {
+        this(size, capacity, perSecond, () -> System.nanoTime() / 1000000L);
+    }
+    
+    /**
+     * @param size the number of slots, rounded up to a power of two
+     * @param capacity the maximum number of tokens in a bucket
+     * @param perSecond the number of tokens added to a bucket per second
+     * @param clock a monotonic clock in milliseconds
+     */
+    public RateLimiter(int size, double capacity, double perSecond, LongSupplier clock)
+    {
+        this.clock = clock;
+        int n = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.capacity = Math.min(TOKEN_MASK, (long) (capacity * TOKEN_UNITS));
+        this.unitsPerTick = perSecond * TOKEN_UNITS * TICK_MILLIS / 1000;
+        this.fullTicks = (long) Math.ceil(this.capacity / unitsPerTick);
+    }
+    
+    /**
+     * Takes a token for the key, if there is one.
+     *
+     * @param key the key, such as a user or guild id
+     * @return true if the request is allowed
+     */
+    public boolean tryAcquire(long key)
+    {
+        return tryAcquire(key, 1.0);
+    }
+    
+    public boolean tryAcquire(long key, double tokens)
+    {
+        boolean result = update(key, (long) (tokens * TOKEN_UNITS), false);
+        (result ? allowed : limited).incrementAndGet();
+        return result;
+    }
+    
+    /**
+     * Empties the bucket for the key, so it is limited until it refills.
+     *
+     * @param key the key
+     */
+    public void drain(long key)
+    {
+        update(key, capacity, true);
+    }
+    
+    /**
+     * Checks if the bucket for the key has the given number of tokens, without
+     * taking any.
+     *
+     * @param key the key
+     * @param tokens the number of tokens
+     * @return true if the bucket has at least that many tokens
+     */
+    public boolean hasTokens(long key, double tokens)
+    {
+        long hash = mix(key), fp = fingerprint(hash), now = now();
+        for(int i = 0; i < 2; i++)
+        {
+            long state = slots.get(index(hash, i));
+            if(state != 0L && (state >>> 48) == fp)
+                return tokens(state, now) >= (long) (tokens * TOKEN_UNITS);
+        }
+        return true;
+    }
+    
+    public long getLimited()
+    {
+        return limited.get();
+    }
+    
+    public String getMetrics()
+    {
+        return "allowed=" + allowed.get() + ", limited=" + limited.get() + ", overflow=" + overflow.get();
+    }
+    
+    private boolean update(long key, long cost, boolean force)
+    {
+        long hash = mix(key), fp = fingerprint(hash);
+        while(true)
+        {
+            long now = now();
+            int free = -1;
+            long freeState = 0L;
+            boolean retry = false;
+            for(int i = 0; i < 2 && !retry; i++)
+            {
+                int idx = index(hash, i);
+                long state = slots.get(idx);
+                if(state != 0L && (state >>> 48) == fp)
+                {
+                    long tokens = tokens(state, now);
+                    if(tokens < cost && !force)
+                        return false;
+                    if(slots.compareAndSet(idx, state, pack(fp, now, Math.max(0L, tokens - cost))))
+                        return true;
+                    retry = true;
+                }
+                else if(free < 0 && (state == 0L || tokens(state, now) >= capacity))
+                {
+                    free = idx;
+                    freeState = state;
+                }
+            }
+            if(retry)
+                continue;
+            if(free < 0)
+            {
+                // both slots are busy with other keys, so don't limit this one
+                overflow.incrementAndGet();
+                return true;
+            }
+            if(cost > capacity && !force)
+                return false;
+            if(slots.compareAndSet(free, freeState, pack(fp, now, Math.max(0L, capacity - cost))))
+                return true;
+        }
+    }
+    
+    private long tokens(long state, long now)
+    {
+        long elapsed = (now - ((state >>> 16) & TIME_MASK)) & TIME_MASK;
+        if(elapsed >= fullTicks)
+            return capacity;
+        return Math.min(capacity, (state & TOKEN_MASK) + (long) (elapsed * unitsPerTick));
+    }
+    
+    private int index(long hash, int probe)
+    {
+        return ((int) hash & mask) ^ probe;
+    }
+    
+    private static long pack(long fp, long now, long tokens)
+    {
+        return (fp << 48) | ((now & TIME_MASK) << 16) | tokens;
+    }
+    
+    private static long fingerprint(long hash)
+    {
+        long fp = hash >>> 48;
+        return fp == 0L ? 1L : fp;
+    }
+    
+    private long now()
+    {
+        return (clock.getAsLong() / TICK_MILLIS) & TIME_MASK;
+    }
+    
+    // finalizer from splitmix64, to spread snowflake bits over the table
+    private static long mix(long key)
+    {
+        long z = key;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
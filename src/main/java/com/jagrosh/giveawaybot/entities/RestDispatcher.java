@@ -0,0 +1,377 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.interactions.requests.RestClient;
+import com.jagrosh.interactions.requests.RestClient.RestResponse;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends Discord REST requests in priority order. Requests that a user is
+ * waiting on go before giveaway endings, which go before background work,
+ * and each priority has a cap on how many requests it can have in flight at
+ * once. Requests are also grouped into buckets (usually per channel or per
+ * guild); like Discord's own limits, each route in a bucket has its own small
+ * token allowance, and a route that gets a 429 is held back until the
+ * retry-after has passed. Repeated 403s and 404s (other than for deleted
+ * messages) open a circuit breaker for the bucket (or for the route in that
+ * bucket), after which requests are refused immediately until a probe
+ * succeeds.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class RestDispatcher
+{
+    public enum Priority
+    {
+        INTERACTIVE(24, 1000), ENDING(16, 5000), BACKGROUND(4, 1000);
+        
+        private final int maxInFlight, maxQueued;
+        
+        private Priority(int maxInFlight, int maxQueued)
+        {
+            this.maxInFlight = maxInFlight;
+            this.maxQueued = maxQueued;
+        }
+    }
+    
+    private final static int MAX_IN_FLIGHT = 32,
+                             BUCKET_TOKENS = 5,
+                             MAX_SCAN = 64,
+                             UNKNOWN_CHANNEL = 10003,
+                             UNKNOWN_MESSAGE = 10008;
+    private final static long BUCKET_WINDOW = 5000L,
+                              REQUEST_TIMEOUT = 20000L;
+    
+    private final Logger log = LoggerFactory.getLogger(RestDispatcher.class);
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Priority,ArrayDeque<Task>> queues = new HashMap<>();
+    private final Map<String,Bucket> buckets = new HashMap<>();
+    private final int[] inFlight = new int[Priority.values().length];
+    private final long[] completed = new long[Priority.values().length], 
+                         waitTime = new long[Priority.values().length], 
+                         rejected = new long[Priority.values().length];
+    private final CircuitBreakers breakers = new CircuitBreakers();
+    private final RestClient rest;
+    private int totalInFlight = 0;
+    private long rateLimited = 0L, globalBlockedUntil = 0L;
+    
+    public RestDispatcher(RestClient rest)
+    {
+        this.rest = rest;
+        for(Priority p: Priority.values())
+            queues.put(p, new ArrayDeque<>());
+    }
+    
+    public void start()
+    {
+        schedule.scheduleWithFixedDelay(() -> 
+        {
+            cleanBuckets();
+            breakers.clean();
+            pump();
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+    
+    public void shutdown()
+    {
+        schedule.shutdown();
+        workers.shutdown();
+    }
+    
+    public RestClient getRestClient()
+    {
+        return rest;
+    }
+    
+    /**
+     * Checks if requests for a bucket are being refused because of repeated
+     * failures, such as for a deleted channel or missing permissions.
+     *
+     * @param bucket the rate limit bucket
+     * @return true if the bucket's circuit breaker is open
+     */
+    public boolean isBroken(String bucket)
+    {
+        return breakers.isOpen(bucket);
+    }
+    
+    /**
+     * Queues a request. The returned future completes with the response, or
+     * exceptionally if the request failed or the queue for its priority is
+     * full, or if a circuit breaker is open for the bucket or route. Cancelling
+     * the future removes the request if it hasn't been sent; once it has been
+     * sent it can't be cancelled, and the future completes with the response.
+     *
+     * @param priority how urgent the request is
+     * @param bucket the rate limit bucket, such as "channel:1234"
+     * @param route the name of the route, such as "POST_MESSAGE"
+     * @param request performs the request with the rest client
+     * @return a future for the response
+     */
+    public CompletableFuture<RestResponse> submit(Priority priority, String bucket, String route, Function<RestClient,Future<RestResponse>> request)
+    {
+        Task task = new Task(priority, bucket, route + " " + bucket, request);
+        // check both breakers before either one hands out its probe
+        if(breakers.isOpen(task.bucket) || breakers.isOpen(task.route) || !breakers.allow(task.bucket) || !breakers.allow(task.route))
+        {
+            synchronized(this)
+            {
+                rejected[priority.ordinal()]++;
+            }
+            task.future.completeExceptionally(new RejectedExecutionException("Circuit open for " + task.route));
+            return task.future;
+        }
+        synchronized(this)
+        {
+            ArrayDeque<Task> queue = queues.get(priority);
+            if(queue.size() >= priority.maxQueued)
+            {
+                rejected[priority.ordinal()]++;
+                task.future.completeExceptionally(new RejectedExecutionException("Too many queued " + priority + " requests"));
+                return task.future;
+            }
+            queue.add(task);
+        }
+        pump();
+        return task.future;
+    }
+    
+    public synchronized Map<String,Long> getMetrics()
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        for(Priority p: Priority.values())
+        {
+            String name = p.name().charAt(0) + p.name().substring(1).toLowerCase();
+            map.put(name + "Queued", (long) queues.get(p).size());
+            map.put(name + "InFlight", (long) inFlight[p.ordinal()]);
+            map.put(name + "Completed", completed[p.ordinal()]);
+            map.put(name + "Rejected", rejected[p.ordinal()]);
+            map.put(name + "AvgWait", completed[p.ordinal()] == 0 ? 0L : waitTime[p.ordinal()] / completed[p.ordinal()]);
+        }
+        map.put("RateLimited", rateLimited);
+        map.put("Buckets", (long) buckets.size());
+        map.put("OpenCircuits", (long) breakers.getOpenCount());
+        return map;
+    }
+    
+    // starts as many queued requests as the limits allow
+    private void pump()
+    {
+        while(true)
+        {
+            Task task;
+            synchronized(this)
+            {
+                task = next();
+                if(task == null)
+                    return;
+                inFlight[task.priority.ordinal()]++;
+                totalInFlight++;
+                waitTime[task.priority.ordinal()] += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.created);
+            }
+            try
+            {
+                workers.execute(() -> run(task));
+            }
+            catch(RejectedExecutionException ex)
+            {
+                task.future.completeExceptionally(ex);
+                finish(task, null);
+            }
+        }
+    }
+    
+    // picks the highest priority request that can be sent right now
+    private Task next()
+    {
+        long now = System.currentTimeMillis();
+        if(totalInFlight >= MAX_IN_FLIGHT || now < globalBlockedUntil)
+            return null;
+        for(Priority p: Priority.values())
+        {
+            if(inFlight[p.ordinal()] >= p.maxInFlight)
+                continue;
+            Iterator<Task> it = queues.get(p).iterator();
+            for(int i = 0; i < MAX_SCAN && it.hasNext(); i++)
+            {
+                Task task = it.next();
+                if(task.future.isDone())
+                {
+                    // cancelled or timed out while waiting
+                    it.remove();
+                    continue;
+                }
+                Bucket bucket = buckets.computeIfAbsent(task.route, b -> new Bucket());
+                if(bucket.tryTake(now))
+                {
+                    it.remove();
+                    task.future.sent = true;
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private void run(Task task)
+    {
+        RestResponse res = null;
+        try
+        {
+            res = task.request.apply(rest).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+            task.future.complete(res);
+        }
+        catch(Exception ex)
+        {
+            task.future.completeExceptionally(ex);
+        }
+        finally
+        {
+            finish(task, res);
+        }
+    }
+    
+    private void finish(Task task, RestResponse res)
+    {
+        if(res != null)
+            recordOutcome(task, res);
+        synchronized(this)
+        {
+            inFlight[task.priority.ordinal()]--;
+            totalInFlight--;
+            completed[task.priority.ordinal()]++;
+            if(res != null && res.getStatus() == 429)
+            {
+                // the response body says how long to wait, and whether it applies to everything
+                rateLimited++;
+                long retryAfter = (long) (res.getBody().optDouble("retry_after", 1.0) * 1000);
+                long until = System.currentTimeMillis() + retryAfter;
+                if(res.getBody().optBoolean("global", false))
+                    globalBlockedUntil = until;
+                else
+                    buckets.computeIfAbsent(task.route, b -> new Bucket()).block(until);
+                log.warn(String.format("Hit a %s rate limit on %s, retrying after %dms", res.getBody().optBoolean("global", false) ? "global" : "bucket", task.route, retryAfter));
+                schedule.schedule(this::pump, retryAfter, TimeUnit.MILLISECONDS);
+            }
+        }
+        pump();
+    }
+    
+    private void recordOutcome(Task task, RestResponse res)
+    {
+        if(res.isSuccess())
+        {
+            breakers.success(task.bucket);
+            breakers.success(task.route);
+        }
+        else if(res.getStatus() == 403 || (res.getStatus() == 404 && res.getErrorSpecific() == UNKNOWN_CHANNEL))
+        {
+            // the whole channel is unusable
+            breakers.failure(task.bucket);
+        }
+        else if(res.getStatus() == 404 && res.getErrorSpecific() != UNKNOWN_MESSAGE)
+        {
+            // a deleted message or a rate limit says nothing about the route
+            breakers.failure(task.route);
+        }
+    }
+    
+    private synchronized void cleanBuckets()
+    {
+        long now = System.currentTimeMillis();
+        buckets.values().removeIf(b -> b.isIdle(now));
+    }
+    
+    private class Task
+    {
+        private final Priority priority;
+        private final String bucket, route;
+        private final Function<RestClient,Future<RestResponse>> request;
+        private final Request future = new Request();
+        private final long created = System.nanoTime();
+        
+        private Task(Priority priority, String bucket, String route, Function<RestClient,Future<RestResponse>> request)
+        {
+            this.priority = priority;
+            this.bucket = bucket;
+            this.route = route;
+            this.request = request;
+        }
+    }
+    
+    // a response future that can only be cancelled while it's still queued
+    private class Request extends CompletableFuture<RestResponse>
+    {
+        private boolean sent = false;
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            synchronized(RestDispatcher.this)
+            {
+                return !sent && super.cancel(mayInterruptIfRunning);
+            }
+        }
+    }
+    
+    private class Bucket
+    {
+        private int tokens = BUCKET_TOKENS;
+        private long resetAt = 0L, blockedUntil = 0L;
+        
+        private boolean tryTake(long now)
+        {
+            if(now < blockedUntil)
+                return false;
+            if(now >= resetAt)
+            {
+                tokens = BUCKET_TOKENS;
+                resetAt = now + BUCKET_WINDOW;
+            }
+            if(tokens <= 0)
+                return false;
+            tokens--;
+            return true;
+        }
+        
+        private void block(long until)
+        {
+            blockedUntil = Math.max(blockedUntil, until);
+            tokens = 0;
+        }
+        
+        private boolean isIdle(long now)
+        {
+            return now >= resetAt && now >= blockedUntil;
+        }
+    }
+}
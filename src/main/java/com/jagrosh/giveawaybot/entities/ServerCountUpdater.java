@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 public class ServerCountUpdater
 {
     private final static String API_ENDPOINT = "https://botblock.org/api/count";
+    private final static long UPDATE_TIMEOUT = 60000L;
     
     private final Logger log = LoggerFactory.getLogger(ServerCountUpdater.class);
     private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
@@ -65,10 +66,11 @@ public class ServerCountUpdater
     
     public void updateServerCount()
     {
+        Deadline deadline = Deadline.after(UPDATE_TIMEOUT);
         try
         {
             // get estimated guild count
-            RestResponse res = bot.getRestClient().request(Route.GET_GATEWAY.format()).get();
+            RestResponse res = deadline.await(bot.getRestDispatcher().submit(RestDispatcher.Priority.BACKGROUND, "gateway", "GET_GATEWAY", r -> r.request(Route.GET_GATEWAY.format())));
             int guilds = res.getBody().getInt("shards") * 1000;
             if(guilds <= 0)
                 throw new IllegalArgumentException("Invalid guild count");
@@ -79,7 +81,7 @@ public class ServerCountUpdater
                     .put("server_count", guilds)
                     .put("bot_id", Long.toString(bot.getBotId()));
             tokens.forEach((key,val) -> json.put(key, val));
-            RestResponse res2 = bot.getRestClient().simpleRequest(API_ENDPOINT, Route.Type.POST, json.toString()).get();
+            RestResponse res2 = deadline.await(bot.getRestClient().simpleRequest(API_ENDPOINT, Route.Type.POST, json.toString()));
             if(res2.isSuccess() && res2.getBody().has("failure"))
                 res2.getBody().getJSONObject("failure").toMap().forEach((site,val) -> log.warn(String.format("Updating server count for '%s' failed: %s", site, val)));
             else
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.entities;
+
+import com.jagrosh.giveawaybot.data.Database;
+import com.jagrosh.giveawaybot.util.WindowedCounter;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps global statistics up to date in the background, so that anything that
+ * displays them only reads a few fields. Lifetime totals kept elsewhere (such
+ * as the interactions client's request metrics) are sampled every second, and
+ * the differences are added to windowed counters, giving recent rates rather
+ * than averages since startup.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class Statistics
+{
+    public final static long MINUTE = 60 * 1000L,
+                             HOUR = 60 * MINUTE;
+    private final static int SLOTS = 360;
+    private final static long SLOT_MILLIS = HOUR / SLOTS;
+    
+    private final Logger log = LoggerFactory.getLogger(Statistics.class);
+    private final ScheduledExecutorService schedule = Executors.newSingleThreadScheduledExecutor();
+    private final WindowedCounter entries = new WindowedCounter(SLOTS, SLOT_MILLIS),
+                                  endings = new WindowedCounter(SLOTS, SLOT_MILLIS),
+                                  requests = new WindowedCounter(SLOTS, SLOT_MILLIS),
+                                  requestTime = new WindowedCounter(SLOTS, SLOT_MILLIS);
+    private final Database database;
+    private final LongSupplier servers, ended;
+    private final Supplier<Map<String,Long>> requestMetrics;
+    private volatile long activeGiveaways, serverCount;
+    private long lastEnded = -1L, lastRequests = -1L, lastRequestTime = -1L;
+    
+    /**
+     * @param database the database, for the number of active giveaways
+     * @param servers the current server count
+     * @param ended the total number of giveaways ended since startup
+     * @param requestMetrics the interactions client's lifetime request metrics
+     */
+    public Statistics(Database database, LongSupplier servers, LongSupplier ended, Supplier<Map<String,Long>> requestMetrics)
+    {
+        this.database = database;
+        this.servers = servers;
+        this.ended = ended;
+        this.requestMetrics = requestMetrics;
+        this.activeGiveaways = database.countAllGiveaways();
+        this.serverCount = servers.getAsLong();
+    }
+    
+    public void start()
+    {
+        schedule.scheduleWithFixedDelay(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+    
+    public void shutdown()
+    {
+        schedule.shutdown();
+    }
+    
+    public void recordEntry()
+    {
+        entries.add(1);
+    }
+    
+    public long getActiveGiveaways()
+    {
+        return activeGiveaways;
+    }
+    
+    public long getServerCount()
+    {
+        return serverCount;
+    }
+    
+    public long getEntries(long windowMillis)
+    {
+        return entries.sum(windowMillis);
+    }
+    
+    public long getEndings(long windowMillis)
+    {
+        return endings.sum(windowMillis);
+    }
+    
+    public double getRequestsPerSecond(long windowMillis)
+    {
+        // divide by the time the counted slots cover, not the whole window
+        long now = System.currentTimeMillis();
+        return requests.sum(windowMillis, now) * 1000.0 / Math.max(1L, requests.covered(windowMillis, now));
+    }
+    
+    /**
+     * @param windowMillis the window, in milliseconds
+     * @return the average request time over the window, in seconds
+     */
+    public double getAverageRequestTime(long windowMillis)
+    {
+        long count = requests.sum(windowMillis);
+        return count == 0L ? 0.0 : requestTime.sum(windowMillis) / (double) count * 1e-9;
+    }
+    
+    private void sample()
+    {
+        try
+        {
+            activeGiveaways = database.countAllGiveaways();
+            serverCount = servers.getAsLong();
+            long end = ended.getAsLong();
+            if(lastEnded >= 0L)
+                endings.add(end - lastEnded);
+            lastEnded = end;
+            
+            Map<String,Long> metrics = requestMetrics.get();
+            long req = metrics.getOrDefault("TotalRequests", 0L), time = metrics.getOrDefault("TotalTime", 0L);
+            if(lastRequests >= 0L)
+            {
+                requests.add(req - lastRequests);
+                requestTime.add(time - lastRequestTime);
+            }
+            lastRequests = req;
+            lastRequestTime = time;
+        }
+        catch(Exception ex)
+        {
+            log.error("Exception sampling statistics: ", ex);
+        }
+    }
+}
@@ -17,9 +17,26 @@ package com.jagrosh.giveawaybot.entities;
 
 import club.minnced.discord.webhook.WebhookClient;
 import club.minnced.discord.webhook.WebhookClientBuilder;
+import club.minnced.discord.webhook.exception.HttpException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Sends log messages to a webhook. Messages are queued in a bounded buffer
+ * and sent in batches, with repeated messages collapsed into one line with a
+ * count. If the buffer is full, new messages are dropped and the number of
+ * dropped messages is reported in the next batch, so logging never blocks.
  *
  * @author John Grosh (john.a.grosh@gmail.com)
  */
@@ -37,27 +54,161 @@ public class WebhookLog
         }
     }
     
+    private final static int MAX_QUEUED = 1000,
+                             MAX_BATCH = 50,
+                             MAX_LENGTH = 2000,
+                             COUNT_ROOM = 16; // room for a " `(x123)`" repeat count
+    private final static long FLUSH_INTERVAL = 2000L,
+                              ERROR_BACKOFF = 5000L,
+                              RATELIMIT_BACKOFF = 30000L;
+    
     private final WebhookClient client;
     private final String logname;
+    private final ArrayBlockingQueue<String> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong(),
+                             totalDropped = new AtomicLong();
+    private volatile long blockedUntil = 0L;
     
     public WebhookLog(String webhookUrl, String logname)
     {
         this.client = new WebhookClientBuilder(webhookUrl).build();
         this.logname = logname;
+        flusher.scheduleWithFixedDelay(() -> flush(false), FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
     }
     
     public void send(Level level, String message)
     {
-        client.send(level.emoji + " `[" + logname + "]` " + message);
+        if(!queue.offer(format(level, message)))
+        {
+            dropped.incrementAndGet();
+            totalDropped.incrementAndGet();
+        }
+        else if(queue.size() >= MAX_BATCH && !flusher.isShutdown() && flushPending.compareAndSet(false, true))
+        {
+            try
+            {
+                flusher.execute(() -> flush(false));
+            }
+            catch(RejectedExecutionException ignored) {}
+        }
+    }
+    
+    /**
+     * Sends a message followed by a code block. The contents of the block are
+     * cut short (on a line break, if possible) so that batching never has to
+     * truncate the message and cut off the closing fence.
+     *
+     * @param level the log level
+     * @param title the text before the code block
+     * @param language the code block language, such as "diff"
+     * @param contents the contents of the code block
+     */
+    public void sendCodeBlock(Level level, String title, String language, String contents)
+    {
+        String open = title + " ```" + language + "\n", close = "\n```";
+        int room = MAX_LENGTH - COUNT_ROOM - format(level, "").length() - open.length() - close.length();
+        if(contents.length() > room)
+        {
+            int end = contents.lastIndexOf('\n', room - 4);
+            if(end <= 0)
+                end = room - 4;
+            if(Character.isHighSurrogate(contents.charAt(end - 1)))
+                end--;
+            contents = contents.substring(0, end) + "\n...";
+        }
+        send(level, open + contents + close);
     }
     
     public void sendBlocking(Level level, String message) throws InterruptedException, ExecutionException
     {
-        client.send(level.emoji + " `[" + logname + "]` " + message).get();
+        send(level, message);
+        flusher.submit(() -> flush(true)).get();
+    }
+    
+    public long getDropped()
+    {
+        return totalDropped.get();
     }
     
     public void shutdown()
     {
+        try
+        {
+            flusher.submit(() -> flush(true));
+        }
+        catch(RejectedExecutionException ignored) {}
+        flusher.shutdown();
+        try
+        {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException ignored) {}
         client.close();
     }
+    
+    // only runs on the flusher thread
+    private void flush(boolean all)
+    {
+        flushPending.set(false);
+        if(!all && System.currentTimeMillis() < blockedUntil)
+            return;
+        
+        // collect the next batch, collapsing repeated messages
+        Map<String,Integer> counts = new LinkedHashMap<>();
+        List<String> batch = new ArrayList<>();
+        queue.drainTo(batch, all ? Integer.MAX_VALUE : MAX_BATCH);
+        batch.forEach(line -> counts.merge(line, 1, Integer::sum));
+        long drops = dropped.getAndSet(0);
+        if(drops > 0)
+            counts.put(format(Level.WARNING, "Dropped `" + drops + "` log messages"), 1);
+        if(counts.isEmpty())
+            return;
+        
+        // join the lines into as few messages as possible
+        List<String> messages = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        counts.forEach((line, count) -> 
+        {
+            String str = count > 1 ? line + " `(x" + count + ")`" : line;
+            if(str.length() > MAX_LENGTH)
+                str = str.substring(0, MAX_LENGTH - 3) + "...";
+            if(sb.length() > 0 && sb.length() + 1 + str.length() > MAX_LENGTH)
+            {
+                messages.add(sb.toString());
+                sb.setLength(0);
+            }
+            sb.append(sb.length() > 0 ? "\n" : "").append(str);
+        });
+        messages.add(sb.toString());
+        
+        for(String msg: messages)
+        {
+            CompletableFuture<?> future = client.send(msg).whenComplete((m, t) -> 
+            {
+                if(t != null)
+                    blockedUntil = System.currentTimeMillis() + (isRateLimit(t) ? RATELIMIT_BACKOFF : ERROR_BACKOFF);
+            });
+            if(all)
+            {
+                try
+                {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                catch(Exception ignored) {}
+            }
+        }
+    }
+    
+    private String format(Level level, String message)
+    {
+        return level.emoji + " `[" + logname + "]` " + message;
+    }
+    
+    private static boolean isRateLimit(Throwable t)
+    {
+        Throwable cause = t.getCause() == null ? t : t.getCause();
+        return cause instanceof HttpException && ((HttpException) cause).getCode() == 429;
+    }
 }
@@ -29,10 +29,82 @@ public class FormatUtil
 {
     public static String filter(String input)
     {
-        return input.replace("\u202E","") // RTL override
-                .replace("@everyone","@\u0435veryone") // cyrillic e
-                .replace("@here","@h\u0435re") // cyrillic e
-                .trim();
+        // most text has nothing to filter, so don't copy it
+        if(input.indexOf('\u202E') < 0 && input.indexOf('@') < 0)
+            return input.trim();
+        StringBuilder sb = new StringBuilder(input.length());
+        int i = 0;
+        while(i < input.length())
+        {
+            char c = input.charAt(i);
+            if(c == '\u202E') // RTL override
+            {
+                i++;
+                continue;
+            }
+            if(c == '@')
+            {
+                // mentions are matched as if RTL overrides were already removed
+                int end = matchMention(input, i + 1, "everyone");
+                if(end >= 0)
+                {
+                    sb.append("@\u0435veryone"); // cyrillic e
+                    i = end;
+                    continue;
+                }
+                end = matchMention(input, i + 1, "here");
+                if(end >= 0)
+                {
+                    sb.append("@h\u0435re"); // cyrillic e
+                    i = end;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        int start = 0, end = sb.length();
+        while(start < end && sb.charAt(start) <= ' ')
+            start++;
+        while(end > start && sb.charAt(end - 1) <= ' ')
+            end--;
+        return sb.substring(start, end);
+    }
+    
+    // returns the index after the word, skipping RTL overrides, or -1 if it doesn't match
+    private static int matchMention(String input, int i, String word)
+    {
+        for(int j = 0; j < word.length(); j++)
+        {
+            while(i < input.length() && input.charAt(i) == '\u202E')
+                i++;
+            if(i == input.length() || input.charAt(i) != word.charAt(j))
+                return -1;
+            i++;
+        }
+        return i;
+    }
+    
+    // cuts on a code point boundary, so emoji and other surrogate pairs stay whole
+    public static String truncate(String input, int maxCodePoints)
+    {
+        if(input.length() <= maxCodePoints || input.codePointCount(0, input.length()) <= maxCodePoints)
+            return input;
+        return input.substring(0, input.offsetByCodePoints(0, maxCodePoints)) + "...";
+    }
+    
+    // escapes characters that would start or end formatting in user text
+    public static String escapeMarkdown(String input)
+    {
+        StringBuilder sb = new StringBuilder(input.length() + 8);
+        for(int i = 0; i < input.length(); i++)
+        {
+            char c = input.charAt(i);
+            if("\\*_~`|[]".indexOf(c) >= 0)
+                sb.append('\\');
+            sb.append(c);
+        }
+        return sb.toString();
     }
     
     public static String formatShardStatuses(Collection<JDA> shards)
@@ -18,6 +18,8 @@ package com.jagrosh.giveawaybot.util;
 import com.jagrosh.giveawaybot.Constants;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -55,4 +57,22 @@ public class GiveawayUtil
         }
         return winlist;
     }
+    
+    public static List<Long> selectWinners(long[] pool, int winners)
+    {
+        return selectWinners(pool, winners, Collections.emptySet());
+    }
+    
+    public static List<Long> selectWinners(long[] pool, int winners, Set<Long> exclude)
+    {
+        List<Long> winlist = new ArrayList<>();
+        Set<Integer> picked = new HashSet<>();
+        while(winlist.size() < winners && picked.size() < pool.length)
+        {
+            int i = (int)(randDouble() * pool.length);
+            if(picked.add(i) && !exclude.contains(pool[i]) && !winlist.contains(pool[i]))
+                winlist.add(pool[i]);
+        }
+        return winlist;
+    }
 }
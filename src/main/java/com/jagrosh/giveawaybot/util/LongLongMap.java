@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from long keys to long values, without any boxing.
+ * Key 0 is reserved to mark empty slots, which is fine for snowflake ids.
+ * This class is not thread-safe.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class LongLongMap
+{
+    private long[] keys, values;
+    private int size;
+
+    public LongLongMap()
+    {
+        this(16);
+    }
+
+    public LongLongMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    public long get(long key, long defaultValue)
+    {
+        if(key == 0L)
+            return defaultValue;
+        int mask = keys.length - 1;
+        for(int i = mix(key) & mask; ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key)
+                return values[i];
+            if(keys[i] == 0L)
+                return defaultValue;
+        }
+    }
+
+    public void put(long key, long value)
+    {
+        if(key == 0L)
+            throw new IllegalArgumentException("Key cannot be 0");
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while(keys[i] != 0L && keys[i] != key)
+            i = (i + 1) & mask;
+        if(keys[i] == 0L)
+        {
+            keys[i] = key;
+            if(++size * 2 > keys.length)
+            {
+                values[i] = value;
+                resize();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    private void resize()
+    {
+        long[] oldKeys = keys, oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for(int j = 0; j < oldKeys.length; j++)
+        {
+            if(oldKeys[j] == 0L)
+                continue;
+            int i = mix(oldKeys[j]) & mask;
+            while(keys[i] != 0L)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
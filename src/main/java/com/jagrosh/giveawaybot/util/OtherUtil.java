@@ -23,101 +23,265 @@ import java.awt.Color;
  */
 public class OtherUtil
 {
+    private final static int MINUTE = 60, HOUR = 60 * MINUTE, DAY = 24 * HOUR, WEEK = 7 * DAY;
+    
+    // names are matched ignoring case, with spaces treated as underscores
+    private final static String[] COLOR_NAMES = 
+    {
+        "red", "orange", "yellow", "green", "cyan", "blue", "magenta", "pink", "black", 
+        "dark_gray", "dark_grey", "gray", "grey", "light_gray", "light_grey", "white", 
+        //discord 
+        "blurple", "old_blurple", "greyple", "darktheme"
+    };
+    private final static Color[] COLORS = 
+    {
+        Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN, Color.BLUE, Color.MAGENTA, Color.PINK, Color.decode("#000001"), 
+        Color.DARK_GRAY, Color.DARK_GRAY, Color.GRAY, Color.GRAY, Color.LIGHT_GRAY, Color.LIGHT_GRAY, Color.WHITE, 
+        Color.decode("#5865F2"), Color.decode("#7289DA"), Color.decode("#99AAB5"), Color.decode("#2C2F33")
+    };
+    
+    /**
+     * Parses a color name (such as "red" or "dark grey") or a hex code, with 
+     * or without a leading #.
+     *
+     * @param color the color to parse
+     * @return the color, or null if it could not be parsed
+     */
     public static Color parseColor(String color)
     {
-        try 
-        {
-            switch(color.replace(" ", "_").toLowerCase()) 
-            {
-                case "red":         return Color.RED;
-                case "orange":      return Color.ORANGE;
-                case "yellow":      return Color.YELLOW;
-                case "green":       return Color.GREEN;
-                case "cyan":        return Color.CYAN;
-                case "blue":        return Color.BLUE;
-                case "magenta":     return Color.MAGENTA;
-                case "pink":        return Color.PINK;
-                case "black":       return Color.decode("#000001");
-                case "dark_gray": 
-                case "dark_grey":   return Color.DARK_GRAY;
-                case "gray":
-                case "grey":        return Color.GRAY;
-                case "light_gray":
-                case "light_grey":  return Color.LIGHT_GRAY;
-                case "white":       return Color.WHITE;
-                //discord 
-                case "blurple":     return Color.decode("#5865F2");
-                case "old_blurple": return Color.decode("#7289DA");
-                case "greyple":     return Color.decode("#99AAB5");
-                case "darktheme":   return Color.decode("#2C2F33");
-                default:            return Color.decode(color.startsWith("#") ? color : "#" + color);
-            }
-        }
-        catch(NumberFormatException e) 
-        {
+        for(int i = 0; i < COLOR_NAMES.length; i++)
+            if(isColorName(color, COLOR_NAMES[i]))
+                return COLORS[i];
+        
+        // same as Color.decode, which only accepts positive values
+        int i = color.startsWith("#") ? 1 : 0;
+        if(i == color.length())
             return null;
+        long value = 0L;
+        for(; i < color.length(); i++)
+        {
+            int digit = Character.digit(color.charAt(i), 16);
+            if(digit < 0)
+                return null;
+            value = value * 16 + digit;
+            if(value > Integer.MAX_VALUE)
+                return null;
         }
+        return new Color((int) value);
     }
     
-    @SuppressWarnings("fallthrough")
+    /**
+     * Parses a short time, which is up to 8 digits followed by an optional 
+     * unit: s, m, h, d or w. Without a unit, the time is in seconds.
+     *
+     * @param timestr the time to parse
+     * @return the time in seconds, or -1 if it could not be parsed or is too long
+     */
     public static int parseShortTime(String timestr)
     {
-        timestr = timestr.toLowerCase();
-        if(!timestr.matches("\\d{1,8}[smhd]?"))
+        int len = timestr.length();
+        if(len == 0)
             return -1;
-        int multiplier = 1;
-        switch(timestr.charAt(timestr.length()-1))
-        {
-            case 'd':
-                multiplier *= 24;
-            case 'h':
-                multiplier *= 60;
-            case 'm':
-                multiplier *= 60;
-            case 's':
-                timestr = timestr.substring(0, timestr.length()-1);
-            default:
-        }
-        return multiplier * Integer.parseInt(timestr);
+        int multiplier = unitSeconds(timestr.charAt(len - 1), 0);
+        int digits = multiplier == 0 ? len : len - 1;
+        if(digits < 1 || digits > 8)
+            return -1;
+        int value = parseDigits(timestr, 0, digits);
+        long seconds = (long) Math.max(1, multiplier) * value;
+        return value < 0 || seconds > Integer.MAX_VALUE ? -1 : (int) seconds;
     }
     
+    /**
+     * Parses a time such as "1 day, 2 hours and 30 minutes" or "1d2h30m". 
+     * Each number is followed by a unit, which is read from its first letter:
+     * m for minutes, h for hours, d for days and w for weeks. Anything else 
+     * is treated as seconds. Whitespace, commas and "and" are ignored.
+     *
+     * @param timestr the time to parse
+     * @return the time in seconds, or 0 if it could not be parsed or is too long
+     */
     public static int parseTime(String timestr)
     {
-        timestr = timestr.replaceAll("(?i)(\\s|,|and)","")
-                .replaceAll("(?is)(-?\\d+|[a-z]+)", "$1 ")
-                .trim();
-        String[] vals = timestr.split("\\s+");
-        int timeinseconds = 0;
-        try
+        // this is a single pass over the input, but accepts exactly what the
+        // old regex-based version did, so that a time that used to work still
+        // gives the same giveaway length (ParserTest checks this against the
+        // old version). The input is split into tokens, each of which is a 
+        // number (-?\d+) or a word ([a-z]+), with any unrecognized characters
+        // glued onto the front of the following token. The odd cases (a '+'
+        // prefix, unicode digits, trimmed control characters) all come from
+        // how that glued token went through trim() and Integer.parseInt
+        int len = timestr.length();
+        int num = 0, tokens = 0;
+        long total = 0L;
+        int i = skipIgnored(timestr, 0);
+        while(i < len)
         {
-            for(int j=0; j<vals.length; j+=2)
+            char first = 0;
+            int prefix = 0;
+            char sign = 0;
+            boolean numeric = true, visible = false, matched = false, isNumber = false, negative = false;
+            long value = 0L;
+            while(i < len && !matched)
             {
-                int num = Integer.parseInt(vals[j]);
-                if(vals[j+1].toLowerCase().startsWith("m"))
-                    num*=60;
-                else if(vals[j+1].toLowerCase().startsWith("h"))
-                    num*=60*60;
-                else if(vals[j+1].toLowerCase().startsWith("d"))
-                    num*=60*60*24;
-                timeinseconds+=num;
+                char c = timestr.charAt(i);
+                int next = skipIgnored(timestr, i + 1);
+                if(isDigit(c) || (c == '-' && next < len && isDigit(timestr.charAt(next))))
+                {
+                    if(prefix == 0)
+                        first = c;
+                    if(c == '-')
+                    {
+                        // the sign has to come first
+                        numeric &= prefix == 0;
+                        negative = true;
+                        i = next;
+                    }
+                    while(i < len && isDigit(timestr.charAt(i)))
+                    {
+                        if(value <= Integer.MAX_VALUE + 1L)
+                            value = value * 10 + (timestr.charAt(i) - '0');
+                        i = skipIgnored(timestr, i + 1);
+                    }
+                    matched = isNumber = true;
+                }
+                else if(isLetter(c))
+                {
+                    if(prefix == 0)
+                        first = c;
+                    while(i < len && isLetter(timestr.charAt(i)))
+                        i = skipIgnored(timestr, i + 1);
+                    matched = true;
+                }
+                else
+                {
+                    // leading control characters are trimmed off the first token
+                    if(tokens > 0 || prefix > 0 || c > ' ')
+                    {
+                        // the number may also start with a sign or unicode digits
+                        int digit = Character.digit(c, 10);
+                        if(prefix == 0)
+                            first = c;
+                        if(prefix == 0 && (c == '+' || c == '-'))
+                            sign = c;
+                        else if(digit < 0)
+                            numeric = false;
+                        else if(value <= Integer.MAX_VALUE + 1L)
+                            value = value * 10 + digit;
+                        visible |= c > ' ';
+                        prefix++;
+                    }
+                    i = next;
+                }
+            }
+            
+            // trailing characters only form a token if they aren't all trimmed
+            if(!matched && !visible)
+                break;
+            tokens++;
+            if(tokens % 2 == 1)
+            {
+                negative |= sign == '-';
+                if(!isNumber || !numeric || value > (negative ? Integer.MAX_VALUE + 1L : Integer.MAX_VALUE))
+                    return 0;
+                num = (int) (negative ? -value : value);
+            }
+            else
+            {
+                // reject anything that doesn't fit, rather than letting it wrap around
+                long seconds = (long) num * unitSeconds(first, 1);
+                total += seconds;
+                if(seconds != (int) seconds || total != (int) total)
+                    return 0;
             }
         }
-        catch(Exception ex)
-        {
-            return 0;
-        }
-        return timeinseconds;
+        return tokens == 0 || tokens % 2 == 1 ? 0 : (int) total;
     }
     
+    /**
+     * Parses a number of winners, which is up to 3 digits followed by a w.
+     *
+     * @param winstr the winners to parse
+     * @return the number of winners, or -1 if it could not be parsed
+     */
     public static int parseWinners(String winstr)
     {
-        if(!winstr.toLowerCase().matches("\\d{1,3}w"))
+        int len = winstr.length();
+        if(len < 2 || len > 4 || Character.toLowerCase(winstr.charAt(len - 1)) != 'w')
             return -1;
-        return Integer.parseInt(winstr.substring(0, winstr.length()-1));
+        return parseDigits(winstr, 0, len - 1);
     }
     
     public static boolean strEquals(String a, String b)
     {
         return a == null ? b == null : a.equals(b);
     }
+    
+    private static boolean isColorName(String color, String name)
+    {
+        if(color.length() != name.length())
+            return false;
+        for(int i = 0; i < name.length(); i++)
+        {
+            char c = color.charAt(i);
+            // dotted capital I lower-cases to two characters, so never matches
+            if(c == '\u0130' || Character.toLowerCase(c == ' ' ? '_' : c) != name.charAt(i))
+                return false;
+        }
+        return true;
+    }
+    
+    // seconds per unit, or the default if the character isn't a unit
+    private static int unitSeconds(char unit, int def)
+    {
+        switch(Character.toLowerCase(unit))
+        {
+            case 's': return 1;
+            case 'm': return MINUTE;
+            case 'h': return HOUR;
+            case 'd': return DAY;
+            case 'w': return WEEK;
+            default:  return def;
+        }
+    }
+    
+    // parses ascii digits, returning -1 if there are any other characters
+    private static int parseDigits(String str, int start, int end)
+    {
+        int value = 0;
+        for(int i = start; i < end; i++)
+        {
+            char c = str.charAt(i);
+            if(!isDigit(c))
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    // skips whitespace, commas and the word "and", which don't affect times
+    private static int skipIgnored(String str, int i)
+    {
+        int len = str.length();
+        while(i < len)
+        {
+            char c = str.charAt(i);
+            if(c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r' || c == ',')
+                i++;
+            else if(i + 2 < len && (c | 0x20) == 'a' && (str.charAt(i + 1) | 0x20) == 'n' && (str.charAt(i + 2) | 0x20) == 'd')
+                i += 3;
+            else
+                return i;
+        }
+        return i;
+    }
+    
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+    
+    private static boolean isLetter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of some measurement in a fixed-size ring,
+ * and computes percentiles over them on demand.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SampleWindow
+{
+    private final long[] samples;
+    private long count = 0L;
+    
+    public SampleWindow(int size)
+    {
+        this.samples = new long[size];
+    }
+    
+    public synchronized void add(long sample)
+    {
+        samples[(int) (count++ % samples.length)] = sample;
+    }
+    
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * Computes several percentiles at once, over the samples currently in the
+     * window. If there are no samples, all of the results are zero.
+     *
+     * @param percentiles the percentiles to compute, from 0 to 100
+     * @return the value at each percentile
+     */
+    public long[] getPercentiles(double... percentiles)
+    {
+        long[] sorted;
+        synchronized(this)
+        {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        Arrays.sort(sorted);
+        long[] results = new long[percentiles.length];
+        if(sorted.length == 0)
+            return results;
+        for(int i = 0; i < percentiles.length; i++)
+        {
+            // nearest-rank method
+            int index = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1;
+            results[i] = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+        return results;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pull-based scanner for giveaway summary files. Rather than building a
+ * full JSON tree, this reads the raw bytes once and keeps only what a
+ * reroll needs: the ids in {@code entries[*].id} and {@code winners[*].id},
+ * and the part keys and entry count of a multi-part summary manifest.
+ * Everything else (names, avatars, the giveaway details) is skipped without
+ * being decoded.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SummaryScanner
+{
+    private final static byte[] ENTRIES = bytes("entries"),
+                                WINNERS = bytes("winners"),
+                                ID = bytes("id"),
+                                PARTS = bytes("parts"),
+                                NUM_ENTRIES = bytes("num_entries");
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int pos = 0, limit = 0;
+    private long offset = 0;
+    private byte[] key = new byte[32];
+    private int keyLength = 0;
+
+    private long[] ids = new long[1024];
+    private int numIds = 0, numEntries = -1;
+    private final List<String> parts = new ArrayList<>();
+    private final List<Long> winners = new ArrayList<>();
+
+    private SummaryScanner(InputStream in)
+    {
+        this.in = in;
+    }
+
+    public static Summary scan(InputStream in) throws IOException
+    {
+        SummaryScanner scanner = new SummaryScanner(in);
+        scanner.scanSummary();
+        return new Summary(Arrays.copyOf(scanner.ids, scanner.numIds), scanner.winners.stream().mapToLong(w -> w).toArray(), 
+                scanner.parts, scanner.numEntries);
+    }
+
+    private void scanSummary() throws IOException
+    {
+        expect('{');
+        if(peek() == '}')
+        {
+            next();
+            return;
+        }
+        do
+        {
+            readKey();
+            expect(':');
+            if(keyEquals(ENTRIES) && peek() == '[')
+                scanEntries(false);
+            else if(keyEquals(WINNERS) && peek() == '[')
+                scanEntries(true);
+            else if(keyEquals(PARTS) && peek() == '[')
+                scanParts();
+            else if(keyEquals(NUM_ENTRIES))
+                numEntries = (int) readLong();
+            else
+                skipValue();
+        }
+        while(separator('}'));
+    }
+
+    // winners have the same layout as entries, but there are only a few of them
+    private void scanEntries(boolean winner) throws IOException
+    {
+        expect('[');
+        if(peek() == ']')
+        {
+            next();
+            return;
+        }
+        do
+        {
+            if(peek() != '{')
+            {
+                skipValue();
+                continue;
+            }
+            expect('{');
+            if(peek() == '}')
+            {
+                next();
+                continue;
+            }
+            do
+            {
+                readKey();
+                expect(':');
+                if(keyEquals(ID) && winner)
+                    winners.add(readLong());
+                else if(keyEquals(ID))
+                    addId(readLong());
+                else
+                    skipValue();
+            }
+            while(separator('}'));
+        }
+        while(separator(']'));
+    }
+
+    private void scanParts() throws IOException
+    {
+        expect('[');
+        if(peek() == ']')
+        {
+            next();
+            return;
+        }
+        do
+        {
+            parts.add(readString());
+        }
+        while(separator(']'));
+    }
+
+    private void addId(long id)
+    {
+        if(numIds == ids.length)
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        ids[numIds++] = id;
+    }
+
+    // reads either a ',' (returning true) or the given closing character (returning false)
+    private boolean separator(char close) throws IOException
+    {
+        int c = next();
+        if(c == ',')
+            return true;
+        if(c == close)
+            return false;
+        throw malformed("expected ',' or '" + close + "'");
+    }
+
+    private void readKey() throws IOException
+    {
+        expect('"');
+        keyLength = 0;
+        for(int c = read(); c != '"'; c = read())
+        {
+            if(c == -1)
+                throw malformed("unterminated key");
+            if(c == '\\')
+                c = read();
+            if(keyLength == key.length)
+                key = Arrays.copyOf(key, key.length * 2);
+            key[keyLength++] = (byte) c;
+        }
+    }
+
+    private boolean keyEquals(byte[] target)
+    {
+        if(keyLength != target.length)
+            return false;
+        for(int i = 0; i < keyLength; i++)
+            if(key[i] != target[i])
+                return false;
+        return true;
+    }
+
+    private long readLong() throws IOException
+    {
+        boolean quoted = peek() == '"';
+        if(quoted)
+            next();
+        long val = 0;
+        boolean negative = false;
+        int digits = 0;
+        int c = read();
+        if(c == '-')
+        {
+            negative = true;
+            c = read();
+        }
+        for(; c >= '0' && c <= '9'; c = read(), digits++)
+            val = val * 10 + (c - '0');
+        if(digits == 0)
+            throw malformed("expected a number");
+        if(quoted)
+        {
+            if(c != '"')
+                throw malformed("expected '\"'");
+        }
+        else if(c != -1)
+            pos--; // the character after an unquoted number belongs to the caller
+        return negative ? -val : val;
+    }
+
+    private String readString() throws IOException
+    {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        for(int c = read(); c != '"'; c = read())
+        {
+            if(c == -1)
+                throw malformed("unterminated string");
+            if(c == '\\')
+                c = read();
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private void skipValue() throws IOException
+    {
+        int c = next();
+        switch(c)
+        {
+            case '"':
+                for(c = read(); c != '"'; c = read())
+                {
+                    if(c == -1)
+                        throw malformed("unterminated string");
+                    if(c == '\\')
+                        read();
+                }
+                return;
+            case '{':
+                if(peek() == '}')
+                {
+                    next();
+                    return;
+                }
+                do
+                {
+                    readKey();
+                    expect(':');
+                    skipValue();
+                }
+                while(separator('}'));
+                return;
+            case '[':
+                if(peek() == ']')
+                {
+                    next();
+                    return;
+                }
+                do
+                {
+                    skipValue();
+                }
+                while(separator(']'));
+                return;
+            case -1:
+                throw malformed("unexpected end of input");
+            default:
+                // numbers, true, false, null
+                for(c = read(); c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c); c = read());
+                if(c != -1)
+                    pos--;
+        }
+    }
+
+    private void expect(char expected) throws IOException
+    {
+        if(next() != expected)
+            throw malformed("expected '" + expected + "'");
+    }
+
+    // next non-whitespace character, without consuming it
+    private int peek() throws IOException
+    {
+        int c = next();
+        if(c != -1)
+            pos--;
+        return c;
+    }
+
+    // next non-whitespace character
+    private int next() throws IOException
+    {
+        int c = read();
+        while(isWhitespace(c))
+            c = read();
+        return c;
+    }
+
+    private int read() throws IOException
+    {
+        if(pos == limit)
+        {
+            offset += limit;
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if(limit <= 0)
+            {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private IOException malformed(String reason)
+    {
+        return new IOException("Malformed summary at byte " + (offset + pos) + ": " + reason);
+    }
+
+    private static boolean isWhitespace(int c)
+    {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static byte[] bytes(String str)
+    {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static class Summary
+    {
+        public final long[] entries, winners;
+        public final List<String> parts;
+        public final int numEntries;
+
+        private Summary(long[] entries, long[] winners, List<String> parts, int numEntries)
+        {
+            this.entries = entries;
+            this.winners = winners;
+            this.parts = parts;
+            this.numEntries = numEntries;
+        }
+
+        public boolean isManifest()
+        {
+            return !parts.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot.util;
+
+/**
+ * Counts events over a sliding window, using a ring of fixed-length slots.
+ * Slots are reused once they fall out of the window, so the memory used is
+ * fixed no matter how many events are counted.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class WindowedCounter
+{
+    private final long[] counts, stamps;
+    private final long slotMillis;
+    
+    /**
+     * @param slots the number of slots
+     * @param slotMillis the length of each slot, in milliseconds
+     */
+    public WindowedCounter(int slots, long slotMillis)
+    {
+        this.counts = new long[slots];
+        this.stamps = new long[slots];
+        this.slotMillis = slotMillis;
+    }
+    
+    public void add(long count)
+    {
+        add(count, System.currentTimeMillis());
+    }
+    
+    public synchronized void add(long count, long now)
+    {
+        long stamp = now / slotMillis;
+        int i = (int) (stamp % counts.length);
+        if(stamps[i] != stamp)
+        {
+            stamps[i] = stamp;
+            counts[i] = 0L;
+        }
+        counts[i] += count;
+    }
+    
+    public long sum(long windowMillis)
+    {
+        return sum(windowMillis, System.currentTimeMillis());
+    }
+    
+    /**
+     * Sums the events in the most recent slots covering the given window,
+     * including the current, partial, slot.
+     *
+     * @param windowMillis the length of the window, in milliseconds
+     * @param now the current time, in milliseconds
+     * @return the number of events in the window
+     */
+    public synchronized long sum(long windowMillis, long now)
+    {
+        long stamp = now / slotMillis;
+        long oldest = stamp - slotsFor(windowMillis) + 1;
+        long sum = 0L;
+        for(int i = 0; i < counts.length; i++)
+            if(stamps[i] >= oldest && stamps[i] <= stamp)
+                sum += counts[i];
+        return sum;
+    }
+    
+    /**
+     * Gets how much time the slots summed for a window actually cover, which
+     * is less than the window while the current slot is only partly done.
+     *
+     * @param windowMillis the length of the window, in milliseconds
+     * @param now the current time, in milliseconds
+     * @return the time covered, in milliseconds
+     */
+    public long covered(long windowMillis, long now)
+    {
+        return (slotsFor(windowMillis) - 1) * slotMillis + now % slotMillis;
+    }
+    
+    private long slotsFor(long windowMillis)
+    {
+        return Math.min(counts.length, Math.max(1L, windowMillis / slotMillis));
+    }
+}
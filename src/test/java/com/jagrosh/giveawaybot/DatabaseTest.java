@@ -17,7 +17,20 @@ package com.jagrosh.giveawaybot;
 
 import com.jagrosh.giveawaybot.data.Database;
 import com.jagrosh.giveawaybot.data.Giveaway;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.RollbackException;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.Metamodel;
+import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -29,21 +42,100 @@ import org.junit.Before;
 public class DatabaseTest
 {
     private final static long USER = 1L, GUILD = 2L, CHANNEL = 3L, MESSAGE = 4L;
-    //Database db;
+    private final Map<Long, Giveaway> rows = new HashMap<>();
+    private boolean failCommit, transaction;
+    private Database db;
     
     @Before
     public void initialize()
     {
-        //Database db = new Database("", "testuser", "testpass");
+        rows.put(MESSAGE, giveaway(MESSAGE));
+        rows.put(MESSAGE + 1, giveaway(MESSAGE + 1));
+        db = new Database(proxy(EntityManagerFactory.class, (p, m, a) -> m.getName().equals("createEntityManager")
+                ? proxy(EntityManager.class, (p2, m2, a2) -> entityManager(m2.getName(), a2)) : null));
+    }
+    
+    @After
+    public void shutdown()
+    {
+        failCommit = false;
+        db.shutdown();
     }
     
     @Test
-    public void testGiveawayCreation()
+    public void testRemoveKeepsViewOnRollback()
+    {
+        failCommit = true;
+        db.removeGiveaway(MESSAGE);
+        assertNotNull(db.getGiveaway(MESSAGE));
+        assertEquals(0, db.removeGiveawaysByChannel(CHANNEL));
+        assertEquals(2, db.countGiveawaysByChannel(CHANNEL));
+        assertFalse(transaction);
+        
+        failCommit = false;
+        db.removeGiveaway(MESSAGE);
+        assertNull(db.getGiveaway(MESSAGE));
+        assertEquals(1, db.removeGiveawaysByChannel(CHANNEL));
+        assertEquals(0, db.countGiveawaysByChannel(CHANNEL));
+    }
+    
+    private Giveaway giveaway(long id)
     {
-        Giveaway g = new Giveaway(USER, Instant.now(), 1, "prize", null);
-        g.setMessageId(MESSAGE);
+        Giveaway g = new Giveaway(USER, Instant.now().plusSeconds(60), 1, "prize", null);
+        g.setMessageId(id);
         g.setGuildId(GUILD);
         g.setChannelId(CHANNEL);
-        //db.createGiveaway(g);
+        return g;
+    }
+    
+    // a bare-bones persistence layer whose commits can be made to fail
+    private Object entityManager(String method, Object[] args)
+    {
+        switch(method)
+        {
+            case "getMetamodel":
+                return proxy(Metamodel.class, (p, m, a) -> null);
+            case "createNamedQuery":
+                return proxy(TypedQuery.class, (p, m, a) ->
+                {
+                    if(m.getName().equals("getResultList"))
+                        return args[0].equals("Giveaway.getAll") ? new ArrayList<>(rows.values()) : Collections.emptyList();
+                    return m.getName().equals("setParameter") ? p : null;
+                });
+            case "find":
+                return args[0] == Giveaway.class ? rows.get((Long) args[1]) : null;
+            case "merge":
+                return args[0];
+            case "getTransaction":
+                return proxy(EntityTransaction.class, (p, m, a) ->
+                {
+                    switch(m.getName())
+                    {
+                        case "begin":
+                            transaction = true;
+                            return null;
+                        case "commit":
+                            if(failCommit)
+                                throw new RollbackException("forced rollback");
+                            transaction = false;
+                            return null;
+                        case "rollback":
+                            transaction = false;
+                            return null;
+                        case "isActive":
+                            return transaction;
+                        default:
+                            return null;
+                    }
+                });
+            default:
+                return null;
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{ type }, handler);
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot;
+
+import com.jagrosh.giveawaybot.data.Giveaway;
+import com.jagrosh.giveawaybot.entities.EndingQueue;
+import com.jagrosh.giveawaybot.util.SampleWindow;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class EndingQueueTest
+{
+    @Test
+    public void fairnessTest()
+    {
+        // one guild with a big burst, two with a single giveaway each
+        EndingQueue queue = new EndingQueue();
+        for(int i = 0; i < 25; i++)
+            queue.add(giveaway(1L, i), EndingQueue.Lane.ON_TIME, 1);
+        queue.add(giveaway(2L, 100), EndingQueue.Lane.ON_TIME, 1);
+        queue.add(giveaway(3L, 200), EndingQueue.Lane.ON_TIME, 1);
+        List<Long> order = drain(queue);
+        assertEquals(27, order.size());
+        assertTrue(order.indexOf(100L) < 3);
+        assertTrue(order.indexOf(200L) < 3);
+        assertEquals(0L, (long) order.get(0));
+        assertEquals(24L, (long) order.get(26));
+    }
+    
+    @Test
+    public void weightTest()
+    {
+        EndingQueue queue = new EndingQueue();
+        for(int i = 0; i < 10; i++)
+        {
+            queue.add(giveaway(1L, i), EndingQueue.Lane.ON_TIME, 1);
+            queue.add(giveaway(2L, 100 + i), EndingQueue.Lane.ON_TIME, 2);
+        }
+        // the premium guild gets two endings per turn
+        List<Long> order = drain(queue).subList(0, 6);
+        assertEquals(4, order.stream().filter(id -> id >= 100).count());
+    }
+    
+    @Test
+    public void laneTest()
+    {
+        EndingQueue queue = new EndingQueue();
+        queue.add(giveaway(1L, 1), EndingQueue.Lane.BACKLOG, 1);
+        queue.add(giveaway(2L, 2), EndingQueue.Lane.ON_TIME, 1);
+        assertEquals(EndingQueue.Lane.ON_TIME, queue.poll().lane);
+        assertEquals(EndingQueue.Lane.BACKLOG, queue.poll().lane);
+        assertNull(queue.poll());
+    }
+    
+    @Test
+    public void percentileTest()
+    {
+        SampleWindow window = new SampleWindow(100);
+        assertArrayEquals(new long[]{0, 0}, window.getPercentiles(50, 99));
+        for(int i = 1; i <= 200; i++)
+            window.add(i);
+        // only the most recent 100 samples are kept
+        assertArrayEquals(new long[]{101, 150, 190, 200}, window.getPercentiles(0, 50, 90, 100));
+    }
+    
+    private static Giveaway giveaway(long guildId, long messageId)
+    {
+        Giveaway g = new Giveaway(1L, Instant.now(), 1, "prize", null);
+        g.setGuildId(guildId);
+        g.setMessageId(messageId);
+        return g;
+    }
+    
+    private static List<Long> drain(EndingQueue queue)
+    {
+        List<Long> order = new ArrayList<>();
+        for(EndingQueue.Entry e = queue.poll(); e != null; e = queue.poll())
+            order.add(e.giveaway.getMessageId());
+        return order;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot;
+
+import com.jagrosh.giveawaybot.util.FormatUtil;
+import com.jagrosh.giveawaybot.util.OtherUtil;
+import java.awt.Color;
+import java.util.Random;
+import java.util.function.Function;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class ParserTest
+{
+    private final static int CASES = 5000;
+    
+    // weeks are left out, since the old parsers read them as seconds or rejected them
+    private final static String[] TIME_PARTS = 
+    {
+        "1", "5", "30", "007", "100", "2147483647", "2147483648", "99999999999", "-", "+", " ", "  ", "\t", "\n", ",", 
+        "and", "AND", "An", "nd", "a", "m", "min", "minutes", "M", "h", "hours", "H", "d", "days", "Day", "s", "sec", 
+        "x", "q", "\u00DF", "\u0663", "\u0001", "#", "\u0130", "."
+    };
+    private final static String[] SHORT_TIME_PARTS = { "1", "12", "1234", "99999", "s", "m", "h", "d", "S", "M", "H", "D", "x", "-", "\u0663" };
+    private final static String[] WINNER_PARTS = { "1", "12", "7", "w", "W", "x", " ", "\u0663" };
+    private final static String[] COLOR_PARTS = 
+    {
+        "red", "Blue", "dark", "DARK", "_", " ", "grey", "gray", "light", "old", "blurple", "\u0130", "k", "#", "-", "+", 
+        "0", "f", "F", "7", "ff", "7fffffff", "80000000", "abc", "g", "\u0663", "\uFF21"
+    };
+    private final static String[] FILTER_PARTS = { "@", "everyone", "every", "one", "here", "h", "ere", "\u202E", " ", "\n", "x", "@@" };
+    
+    @Test
+    public void parseTimeTest()
+    {
+        assertEquals(5400, OtherUtil.parseTime("1 hour, 30 minutes"));
+        assertEquals(90061, OtherUtil.parseTime("1d1h1m1s"));
+        assertEquals(2 * 604800, OtherUtil.parseTime("2w"));
+        assertEquals(604800 + 86400, OtherUtil.parseTime("1 week and 1 day"));
+        assertEquals(0, OtherUtil.parseTime("1 hour 30"));
+        assertEquals(0, OtherUtil.parseTime("hello"));
+        assertEquals(0, OtherUtil.parseTime("5000w"));
+        assertEquals(0, OtherUtil.parseTime("2147483647s 1s"));
+        assertEquals(0, OtherUtil.parseTime(""));
+        compare(TIME_PARTS, new Random(1), OtherUtil::parseTime, ParserTest::legacyParseTime);
+    }
+    
+    @Test
+    public void parseShortTimeTest()
+    {
+        assertEquals(30, OtherUtil.parseShortTime("30"));
+        assertEquals(1800, OtherUtil.parseShortTime("30m"));
+        assertEquals(2 * 604800, OtherUtil.parseShortTime("2W"));
+        assertEquals(-1, OtherUtil.parseShortTime("123456789"));
+        assertEquals(-1, OtherUtil.parseShortTime("99999999w"));
+        compare(SHORT_TIME_PARTS, new Random(2), OtherUtil::parseShortTime, ParserTest::legacyParseShortTime);
+    }
+    
+    @Test
+    public void parseWinnersTest()
+    {
+        assertEquals(3, OtherUtil.parseWinners("3w"));
+        assertEquals(-1, OtherUtil.parseWinners("1000w"));
+        compare(WINNER_PARTS, new Random(3), OtherUtil::parseWinners, ParserTest::legacyParseWinners);
+    }
+    
+    @Test
+    public void parseColorTest()
+    {
+        assertEquals(Color.DARK_GRAY, OtherUtil.parseColor("Dark Grey"));
+        assertEquals(new Color(0x5865F2), OtherUtil.parseColor("blurple"));
+        assertEquals(new Color(0x123456), OtherUtil.parseColor("#123456"));
+        assertNull(OtherUtil.parseColor("#"));
+        compare(COLOR_PARTS, new Random(4), OtherUtil::parseColor, ParserTest::legacyParseColor);
+    }
+    
+    @Test
+    public void filterTest()
+    {
+        assertEquals("hi @\u0435veryone", FormatUtil.filter(" hi @every\u202Eone "));
+        assertEquals("@h\u0435re", FormatUtil.filter("@here"));
+        compare(FILTER_PARTS, new Random(5), FormatUtil::filter, ParserTest::legacyFilter);
+    }
+    
+    @Test
+    public void truncateTest()
+    {
+        assertEquals("abc", FormatUtil.truncate("abc", 3));
+        assertEquals("ab...", FormatUtil.truncate("abc", 2));
+        assertEquals("a\uD83C\uDF89...", FormatUtil.truncate("a\uD83C\uDF89\uD83C\uDF89", 2));
+        assertEquals("\\*\\*a\\*\\* \\[b\\](c) \\\\", FormatUtil.escapeMarkdown("**a** [b](c) \\"));
+    }
+    
+    private static <T> void compare(String[] parts, Random random, Function<String,T> parser, Function<String,T> legacy)
+    {
+        for(int i = 0; i < CASES; i++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(9);
+            for(int j = 0; j < count; j++)
+                sb.append(parts[random.nextInt(parts.length)]);
+            String input = sb.toString();
+            assertEquals("Input: " + input, legacy.apply(input), parser.apply(input));
+        }
+    }
+    
+    // the previous implementations, which the scanners have to agree with; 
+    // the only change is that times too long for an int are now rejected
+    
+    private static int legacyParseTime(String timestr)
+    {
+        timestr = timestr.replaceAll("(?i)(\\s|,|and)","")
+                .replaceAll("(?is)(-?\\d+|[a-z]+)", "$1 ")
+                .trim();
+        String[] vals = timestr.split("\\s+");
+        int timeinseconds = 0;
+        try
+        {
+            for(int j=0; j<vals.length; j+=2)
+            {
+                int num = Integer.parseInt(vals[j]);
+                if(vals[j+1].toLowerCase().startsWith("m"))
+                    num = Math.multiplyExact(num, 60);
+                else if(vals[j+1].toLowerCase().startsWith("h"))
+                    num = Math.multiplyExact(num, 60*60);
+                else if(vals[j+1].toLowerCase().startsWith("d"))
+                    num = Math.multiplyExact(num, 60*60*24);
+                timeinseconds = Math.addExact(timeinseconds, num);
+            }
+        }
+        catch(Exception ex)
+        {
+            return 0;
+        }
+        return timeinseconds;
+    }
+    
+    @SuppressWarnings("fallthrough")
+    private static int legacyParseShortTime(String timestr)
+    {
+        timestr = timestr.toLowerCase();
+        if(!timestr.matches("\\d{1,8}[smhd]?"))
+            return -1;
+        int multiplier = 1;
+        switch(timestr.charAt(timestr.length()-1))
+        {
+            case 'd':
+                multiplier *= 24;
+            case 'h':
+                multiplier *= 60;
+            case 'm':
+                multiplier *= 60;
+            case 's':
+                timestr = timestr.substring(0, timestr.length()-1);
+            default:
+        }
+        try
+        {
+            return Math.multiplyExact(multiplier, Integer.parseInt(timestr));
+        }
+        catch(ArithmeticException ex)
+        {
+            return -1;
+        }
+    }
+    
+    private static int legacyParseWinners(String winstr)
+    {
+        if(!winstr.toLowerCase().matches("\\d{1,3}w"))
+            return -1;
+        return Integer.parseInt(winstr.substring(0, winstr.length()-1));
+    }
+    
+    private static Color legacyParseColor(String color)
+    {
+        try 
+        {
+            switch(color.replace(" ", "_").toLowerCase()) 
+            {
+                case "red":         return Color.RED;
+                case "orange":      return Color.ORANGE;
+                case "yellow":      return Color.YELLOW;
+                case "green":       return Color.GREEN;
+                case "cyan":        return Color.CYAN;
+                case "blue":        return Color.BLUE;
+                case "magenta":     return Color.MAGENTA;
+                case "pink":        return Color.PINK;
+                case "black":       return Color.decode("#000001");
+                case "dark_gray": 
+                case "dark_grey":   return Color.DARK_GRAY;
+                case "gray":
+                case "grey":        return Color.GRAY;
+                case "light_gray":
+                case "light_grey":  return Color.LIGHT_GRAY;
+                case "white":       return Color.WHITE;
+                //discord 
+                case "blurple":     return Color.decode("#5865F2");
+                case "old_blurple": return Color.decode("#7289DA");
+                case "greyple":     return Color.decode("#99AAB5");
+                case "darktheme":   return Color.decode("#2C2F33");
+                default:            return Color.decode(color.startsWith("#") ? color : "#" + color);
+            }
+        }
+        catch(NumberFormatException e) 
+        {
+            return null;
+        }
+    }
+    
+    private static String legacyFilter(String input)
+    {
+        return input.replace("\u202E","") // RTL override
+                .replace("@everyone","@\u0435veryone") // cyrillic e
+                .replace("@here","@h\u0435re") // cyrillic e
+                .trim();
+    }
+}
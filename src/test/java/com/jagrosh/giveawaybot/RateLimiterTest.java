@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot;
+
+import com.jagrosh.giveawaybot.entities.RateLimiter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class RateLimiterTest
+{
+    @Test
+    public void burstTest()
+    {
+        RateLimiter limiter = new RateLimiter(1024, 5, 0.01);
+        int allowed = 0;
+        for(int i = 0; i < 20; i++)
+            if(limiter.tryAcquire(113156185389092864L))
+                allowed++;
+        assertEquals(5, allowed);
+        assertTrue(limiter.tryAcquire(113156185389092865L));
+        assertEquals(15, limiter.getLimited());
+    }
+    
+    @Test
+    public void cooldownTest()
+    {
+        AtomicLong time = new AtomicLong(1000L);
+        RateLimiter cooldown = new RateLimiter(64, 1, 10, time::get);
+        assertTrue(cooldown.hasTokens(1L, 1));
+        cooldown.drain(1L);
+        assertFalse(cooldown.hasTokens(1L, 1));
+        assertTrue(cooldown.hasTokens(2L, 1));
+        time.addAndGet(50L);
+        assertFalse(cooldown.hasTokens(1L, 1));
+        time.addAndGet(50L);
+        assertTrue(cooldown.hasTokens(1L, 1));
+    }
+    
+    @Test
+    public void concurrentTest() throws InterruptedException
+    {
+        RateLimiter limiter = new RateLimiter(1024, 100, 0.001);
+        AtomicInteger allowed = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for(int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(() -> 
+            {
+                for(int j = 0; j < 1000; j++)
+                    if(limiter.tryAcquire(42L))
+                        allowed.incrementAndGet();
+            });
+            threads[i].start();
+        }
+        for(Thread t: threads)
+            t.join();
+        assertEquals(100, allowed.get());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot;
+
+import com.jagrosh.giveawaybot.util.SummaryScanner;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares the summary scanner against building the full json tree. This is
+ * run by hand rather than as part of the tests, and needs a HotSpot JVM for
+ * the allocation counts.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SummaryScannerBenchmark
+{
+    public static void main(String[] args) throws IOException
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        byte[] summary = SummaryScannerTest.createSummary(size, new Random(2));
+        System.out.println(String.format("Synthetic summary: %d entries, %d bytes", size, summary.length));
+        for(int i = 0; i < 3; i++)
+        {
+            long start = System.nanoTime(), alloc = allocatedBytes();
+            long[] ids = SummaryScanner.scan(new ByteArrayInputStream(summary)).entries;
+            long scanTime = System.nanoTime() - start, scanAlloc = allocatedBytes() - alloc;
+
+            start = System.nanoTime();
+            alloc = allocatedBytes();
+            JSONArray entries = new JSONObject(new String(summary, StandardCharsets.UTF_8)).getJSONArray("entries");
+            long[] jsonIds = new long[entries.length()];
+            for(int j = 0; j < jsonIds.length; j++)
+                jsonIds[j] = entries.getJSONObject(j).getLong("id");
+            long treeTime = System.nanoTime() - start, treeAlloc = allocatedBytes() - alloc;
+
+            if(ids.length != jsonIds.length)
+                throw new IllegalStateException("Scanner found " + ids.length + " entries, expected " + jsonIds.length);
+            System.out.println(String.format("Scanner: %dms %dkb | JSON tree: %dms %dkb",
+                    scanTime / 1000000, scanAlloc / 1024, treeTime / 1000000, treeAlloc / 1024));
+        }
+    }
+
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.giveawaybot;
+
+import com.jagrosh.giveawaybot.util.SummaryScanner;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SummaryScannerTest
+{
+    @Test
+    public void scanSummaryTest() throws IOException
+    {
+        byte[] summary = createSummary(1000, new Random(1));
+        SummaryScanner.Summary s = SummaryScanner.scan(new ByteArrayInputStream(summary));
+        long[] ids = s.entries;
+        assertArrayEquals(new long[]{2L}, s.winners);
+        JSONArray entries = new JSONObject(new String(summary, StandardCharsets.UTF_8)).getJSONArray("entries");
+        assertEquals(entries.length(), ids.length);
+        for(int i = 0; i < ids.length; i++)
+            assertEquals(entries.getJSONObject(i).getLong("id"), ids[i]);
+    }
+
+    @Test
+    public void scanManifestTest() throws IOException
+    {
+        String manifest = "{\"giveaway\":{\"id\":\"1\",\"prize\":\"a \\\"prize\\\"\",\"num_winners\":1},\"winners\":[],"
+                + "\"num_entries\":12345,\"parts\":[\"123/456\",\"789/1011\"]}";
+        SummaryScanner.Summary s = SummaryScanner.scan(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(s.isManifest());
+        assertEquals(12345, s.numEntries);
+        assertEquals(0, s.entries.length);
+        assertEquals("123/456", s.parts.get(0));
+        assertEquals("789/1011", s.parts.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedTest() throws IOException
+    {
+        SummaryScanner.scan(new ByteArrayInputStream("{\"entries\":[{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static byte[] createSummary(int size, Random random)
+    {
+        StringBuilder sb = new StringBuilder("{\"giveaway\":{\"id\":\"1010101010101010101\",\"prize\":\"Nitro \\\"Classic\\\" 🎉\",")
+                .append("\"desc\":null,\"num_winners\":3,\"host\":{\"username\":\"host\",\"id\":\"1\",\"discrim\":\"0001\"},\"end\":1650000000},")
+                .append("\"winners\":[{\"username\":\"winner\",\"id\":\"2\",\"discrim\":\"0002\",\"avatar\":null}],\"entries\":[");
+        for(int i = 0; i < size; i++)
+        {
+            if(i > 0)
+                sb.append(',');
+            sb.append("{\"username\":\"user\\\\").append(random.nextInt(100000)).append(" éè \\\"quoted\\\"\",")
+              .append("\"id\":\"").append(100000000000000000L + random.nextInt(Integer.MAX_VALUE)).append("\",")
+              .append("\"discrim\":\"").append(String.format("%04d", random.nextInt(10000))).append("\",")
+              .append("\"avatar\":\"a_").append(Long.toHexString(random.nextLong())).append("\"");
+            if(i % 100 == 0)
+                sb.append(",\"premium\":2");
+            sb.append('}');
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}